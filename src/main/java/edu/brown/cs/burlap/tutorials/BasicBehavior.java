@@ -45,9 +45,18 @@ import burlap.mdp.singleagent.oo.OOSADomain;
 import burlap.statehashing.HashableStateFactory;
 import burlap.statehashing.simple.SimpleHashableStateFactory;
 import burlap.visualizer.Visualizer;
+import edu.brown.cs.burlap.tutorials.render.EpisodeRenderer;
+import edu.brown.cs.burlap.tutorials.search.BidirectionalIndexedAStar;
+import edu.brown.cs.burlap.tutorials.search.GridAgentEncoder;
+import edu.brown.cs.burlap.tutorials.search.IndexedAStar;
+import edu.brown.cs.burlap.tutorials.search.ParallelBFS;
+import edu.brown.cs.burlap.tutorials.tabular.GridWorldStateCodec;
 
 import java.awt.*;
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * @author James MacGlashan.
@@ -88,6 +97,19 @@ public class BasicBehavior {
 		new EpisodeSequenceVisualizer(v, domain, outputpath);
 	}
 
+	public void renderVideo(String outputpath){
+		//render the episodes written to outputpath as an animated GIF, without a window
+		List<Episode> episodes = Episode.readEpisodes(outputpath);
+		EpisodeRenderer renderer = new EpisodeRenderer(GridWorldVisualizer.getRenderLayer(gwdg.getMap()), 400, 400);
+		try{
+			int numFrames = renderer.writeGif(episodes, new File(outputpath, "episodes.gif"), 200);
+			System.out.println("Wrote " + numFrames + " frames to " + new File(outputpath, "episodes.gif"));
+		}
+		catch(IOException e){
+			throw new RuntimeException(e);
+		}
+	}
+
 	public void BFSExample(String outputPath){
 
 		DeterministicPlanner planner = new BFS(domain, goalCondition, hashingFactory);
@@ -96,6 +118,17 @@ public class BasicBehavior {
 
 	}
 
+	public void parallelBFSExample(String outputPath){
+
+		//finds the same plan as BFS, expanding each level of the search across the pool's threads
+		ForkJoinPool pool = new ForkJoinPool();
+		DeterministicPlanner planner = new ParallelBFS(domain, goalCondition, hashingFactory, pool);
+		Policy p = planner.planFromState(initialState);
+		pool.shutdown();
+		PolicyUtils.rollout(p, initialState, domain.getModel()).write(outputPath + "parallelBfs");
+
+	}
+
 	public void DFSExample(String outputPath){
 
 		DeterministicPlanner planner = new DFS(domain, goalCondition, hashingFactory);
@@ -123,6 +156,54 @@ public class BasicBehavior {
 
 	}
 
+	public void indexedAStarExample(String outputPath){
+
+		Heuristic mdistHeuristic = new Heuristic() {
+
+			public double h(State s) {
+				GridAgent a = ((GridWorldState)s).agent;
+				double mdist = Math.abs(a.x-10) + Math.abs(a.y-10);
+
+				return -mdist;
+			}
+		};
+
+		//states are identified by the agent's cell, so the search needs no state hashing
+		DeterministicPlanner planner = new IndexedAStar(domain, goalCondition, hashingFactory, mdistHeuristic,
+				new GridAgentEncoder(gwdg.getHeight()));
+		Policy p = planner.planFromState(initialState);
+
+		PolicyUtils.rollout(p, initialState, domain.getModel()).write(outputPath + "indexedAstar");
+
+	}
+
+	public void bidirectionalAStarExample(String outputPath){
+
+		Heuristic toGoal = new Heuristic() {
+
+			public double h(State s) {
+				GridAgent a = ((GridWorldState)s).agent;
+				return -(Math.abs(a.x-10) + Math.abs(a.y-10));
+			}
+		};
+
+		Heuristic fromStart = new Heuristic() {
+
+			public double h(State s) {
+				GridAgent a = ((GridWorldState)s).agent;
+				return -(Math.abs(a.x) + Math.abs(a.y));
+			}
+		};
+
+		State goalState = new GridWorldState(new GridAgent(10, 10), new GridLocation(10, 10, "loc0"));
+		DeterministicPlanner planner = new BidirectionalIndexedAStar(domain, goalState, goalCondition, hashingFactory,
+				toGoal, fromStart, new GridAgentEncoder(gwdg.getHeight()));
+		Policy p = planner.planFromState(initialState);
+
+		PolicyUtils.rollout(p, initialState, domain.getModel()).write(outputPath + "bidirectionalAstar");
+
+	}
+
 	public void valueIterationExample(String outputPath){
 
 		Planner planner = new ValueIteration(domain, 0.99, hashingFactory, 0.001, 100);
@@ -156,6 +237,46 @@ public class BasicBehavior {
 	}
 
 
+	public void checkpointedQLearningExample(String outputPath){
+
+		CheckpointedQLearning agent = new CheckpointedQLearning(domain, 0.99, hashingFactory, 0., 1., new GridWorldStateCodec());
+
+		//continue from the last checkpoint if there is one, and checkpoint every 10 episodes
+		File checkpoint = new File(outputPath + "ql.ckpt");
+		if(checkpoint.exists()){
+			System.out.println("Restoring Q-values from " + checkpoint);
+			try{
+				agent.restoreCheckpoint(checkpoint);
+			}
+			catch(IOException e){
+				throw new RuntimeException(e);
+			}
+		}
+		agent.enableCheckpoints(checkpoint, 10);
+
+		//run learning for 50 episodes
+		try{
+			for(int i = 0; i < 50; i++){
+				Episode e = agent.runLearningEpisode(env);
+
+				e.write(outputPath + "ql_" + i);
+				System.out.println(i + ": " + e.maxTimeStep());
+
+				//reset environment for next learning episode
+				env.resetEnvironment();
+			}
+		}
+		finally{
+			//checkpoints are written by a daemon thread, which the JVM does not wait for on exit, so disable
+			//checkpoints, which closes the checkpointer and waits for the last write
+			agent.disableCheckpoints();
+		}
+
+		simpleValueFunctionVis((ValueFunction)agent, new GreedyQPolicy((QProvider) agent));
+
+	}
+
+
 	public void sarsaLearningExample(String outputPath){
 
 		LearningAgent agent = new SarsaLam(domain, 0.99, hashingFactory, 0., 0.5, 0.3);
@@ -274,15 +395,21 @@ public class BasicBehavior {
 		String outputPath = "output/";
 
 		example.BFSExample(outputPath);
+		//example.parallelBFSExample(outputPath);
 		//example.DFSExample(outputPath);
 		//example.AStarExample(outputPath);
+		//example.indexedAStarExample(outputPath);
+		//example.bidirectionalAStarExample(outputPath);
 		//example.valueIterationExample(outputPath);
 		//example.qLearningExample(outputPath);
+		//example.checkpointedQLearningExample(outputPath);
 		//example.sarsaLearningExample(outputPath);
 
 		//example.experimentAndPlotter();
 
 		example.visualize(outputPath);
+		//or, e.g., on a machine without a display
+		//example.renderVideo(outputPath);
 
 	}
 
@@ -0,0 +1,82 @@
+package edu.brown.cs.burlap.tutorials;
+
+import burlap.behavior.singleagent.Episode;
+import burlap.behavior.singleagent.learning.tdmethods.QLearning;
+import burlap.mdp.singleagent.SADomain;
+import burlap.mdp.singleagent.environment.Environment;
+import burlap.statehashing.HashableStateFactory;
+import edu.brown.cs.burlap.tutorials.tabular.Checkpointer;
+import edu.brown.cs.burlap.tutorials.tabular.QTableCheckpoint;
+import edu.brown.cs.burlap.tutorials.tabular.StateCodec;
+
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * BURLAP's {@link QLearning} with binary checkpoints of its Q-table. Checkpoints are written by a background thread
+ * every few learning episodes once {@link #enableCheckpoints(File, int)} is called, and a checkpoint can be restored
+ * from a memory-mapped file with {@link #restoreCheckpoint(File)}. The format is that of {@link QTableCheckpoint},
+ * so the same file can also be restored into a {@link QLTutorial}.
+ */
+public class CheckpointedQLearning extends QLearning implements Checkpointer.Source {
+
+	protected StateCodec stateCodec;
+	protected Checkpointer checkpointer;
+
+
+	public CheckpointedQLearning(SADomain domain, double gamma, HashableStateFactory hashingFactory,
+								 double qInit, double learningRate, StateCodec stateCodec) {
+		super(domain, gamma, hashingFactory, qInit, learningRate);
+		this.stateCodec = stateCodec;
+	}
+
+	/**
+	 * Enables checkpointing to a file every episodeInterval learning episodes.
+	 * @param file the checkpoint file
+	 * @param episodeInterval the number of episodes between checkpoints, which must be at least 1
+	 */
+	public void enableCheckpoints(File file, int episodeInterval){
+		this.disableCheckpoints();
+		this.checkpointer = new Checkpointer(this, file, episodeInterval);
+	}
+
+	/**
+	 * Disables checkpointing, waiting for any checkpoint still being written.
+	 */
+	public void disableCheckpoints(){
+		if(this.checkpointer != null){
+			this.checkpointer.close();
+			this.checkpointer = null;
+		}
+	}
+
+	public Checkpointer getCheckpointer() {
+		return checkpointer;
+	}
+
+	/**
+	 * Replaces the Q-values learned so far with those in a checkpoint file.
+	 * @param file the checkpoint file
+	 * @throws IOException if the file cannot be read
+	 */
+	public void restoreCheckpoint(File file) throws IOException {
+		this.resetSolver();
+		QTableCheckpoint.read(QTableCheckpoint.map(file), this.qFunction, this.hashingFactory, this.stateCodec, this.domain);
+	}
+
+	@Override
+	public void writeCheckpoint(DataOutput out) throws IOException {
+		QTableCheckpoint.write(out, this.qFunction.values(), this.stateCodec);
+	}
+
+	@Override
+	public Episode runLearningEpisode(Environment env, int maxSteps) {
+		Episode e = super.runLearningEpisode(env, maxSteps);
+		if(this.checkpointer != null){
+			this.checkpointer.episodeEnded();
+		}
+		return e;
+	}
+
+}
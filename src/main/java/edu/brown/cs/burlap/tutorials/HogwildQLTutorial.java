@@ -0,0 +1,352 @@
+package edu.brown.cs.burlap.tutorials;
+
+import burlap.behavior.policy.GreedyQPolicy;
+import burlap.behavior.policy.PolicyUtils;
+import burlap.behavior.singleagent.Episode;
+import burlap.behavior.singleagent.MDPSolver;
+import burlap.behavior.singleagent.learning.LearningAgent;
+import burlap.behavior.valuefunction.ConstantValueFunction;
+import burlap.behavior.valuefunction.QFunction;
+import burlap.behavior.valuefunction.QProvider;
+import burlap.behavior.valuefunction.QValue;
+import burlap.debugtools.RandomFactory;
+import burlap.domain.singleagent.gridworld.GridWorldDomain;
+import burlap.domain.singleagent.gridworld.GridWorldTerminalFunction;
+import burlap.domain.singleagent.gridworld.state.GridAgent;
+import burlap.domain.singleagent.gridworld.state.GridWorldState;
+import burlap.mdp.auxiliary.StateGenerator;
+import burlap.mdp.auxiliary.common.ConstantStateGenerator;
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.state.State;
+import burlap.mdp.singleagent.SADomain;
+import burlap.mdp.singleagent.environment.Environment;
+import burlap.mdp.singleagent.environment.EnvironmentOutcome;
+import burlap.mdp.singleagent.environment.SimulatedEnvironment;
+import burlap.statehashing.HashableState;
+import burlap.statehashing.HashableStateFactory;
+import burlap.statehashing.simple.SimpleHashableStateFactory;
+import edu.brown.cs.burlap.tutorials.tabular.ConcurrentQTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Q-learning in the style of {@link QLTutorial}, except that many worker threads learn at once, each driving its
+ * own {@link SimulatedEnvironment}, and all of them update one shared {@link ConcurrentQTable} without locks
+ * ("Hogwild"). Updates are compare-and-set loops on the bits of each Q-value, so no update is lost, but a worker's
+ * TD target may be computed from Q-values that other workers change before the update lands. The
+ * {@link LearningReport} returned by {@link #learnInParallel(StateGenerator, int, int, int)} reports throughput
+ * and how often updates collided or were computed from stale Q-values.
+ */
+public class HogwildQLTutorial extends MDPSolver implements LearningAgent, QProvider {
+
+	ConcurrentQTable qTable;
+	QFunction qinit;
+	double learningRate;
+	double epsilon;
+
+	/**
+	 * The source of the seeds of each worker's random number generator.
+	 */
+	Random rand = RandomFactory.getMapped(0);
+
+
+	public HogwildQLTutorial(SADomain domain, double gamma, HashableStateFactory hashingFactory,
+							 QFunction qinit, double learningRate, double epsilon){
+
+		this.solverInit(domain, gamma, hashingFactory);
+		this.qinit = qinit;
+		this.learningRate = learningRate;
+		this.epsilon = epsilon;
+		this.qTable = new ConcurrentQTable();
+
+	}
+
+	/**
+	 * Runs learning episodes in parallel. Each worker creates its own {@link SimulatedEnvironment} from the
+	 * state generator and runs its episodes against the shared Q-table.
+	 * @param sg the initial state generator for each worker's environment
+	 * @param numWorkers the number of worker threads
+	 * @param episodesPerWorker the number of episodes each worker runs
+	 * @param maxSteps the max number of steps per episode, or -1 for no limit
+	 * @return a report of the learning throughput and contention
+	 */
+	public LearningReport learnInParallel(final StateGenerator sg, int numWorkers, final int episodesPerWorker, final int maxSteps){
+
+		ExecutorService executor = Executors.newFixedThreadPool(numWorkers);
+		List<Future<LearningReport>> futures = new ArrayList<Future<LearningReport>>(numWorkers);
+
+		long start = System.nanoTime();
+		for(int w = 0; w < numWorkers; w++){
+			final long seed = this.rand.nextLong();
+			futures.add(executor.submit(new Callable<LearningReport>() {
+				@Override
+				public LearningReport call() throws Exception {
+					Worker worker = new Worker(new Random(seed));
+					SimulatedEnvironment env = new SimulatedEnvironment(domain, sg);
+					for(int i = 0; i < episodesPerWorker; i++){
+						worker.runEpisode(env, maxSteps, null);
+						env.resetEnvironment();
+					}
+					return worker.report;
+				}
+			}));
+		}
+
+		LearningReport total = new LearningReport();
+		try{
+			for(Future<LearningReport> f : futures){
+				total.add(f.get());
+			}
+		}
+		catch(Exception e){
+			throw new RuntimeException(e);
+		}
+		finally{
+			executor.shutdown();
+		}
+		total.workers = numWorkers;
+		total.nanos = System.nanoTime() - start;
+
+		return total;
+	}
+
+	@Override
+	public Episode runLearningEpisode(Environment env) {
+		return this.runLearningEpisode(env, -1);
+	}
+
+	@Override
+	public Episode runLearningEpisode(Environment env, int maxSteps) {
+		Episode e = new Episode(env.currentObservation());
+		new Worker(new Random(this.rand.nextLong())).runEpisode(env, maxSteps, e);
+		return e;
+	}
+
+	@Override
+	public void resetSolver() {
+		this.qTable.clear();
+	}
+
+	@Override
+	public List<QValue> qValues(State s) {
+		ConcurrentQTable.Row row = this.stateRow(s);
+		List<QValue> qs = new ArrayList<QValue>(row.numActions());
+		for(int i = 0; i < row.numActions(); i++){
+			qs.add(new QValue(s, row.action(i), row.q(i)));
+		}
+		return qs;
+	}
+
+	@Override
+	public double qValue(State s, Action a) {
+		ConcurrentQTable.Row row = this.stateRow(s);
+		int i = row.position(a);
+		if(i == -1){
+			throw new RuntimeException("Could not find matching Q-value.");
+		}
+		return row.q(i);
+	}
+
+	@Override
+	public double value(State s) {
+		return this.stateRow(s).maxQ();
+	}
+
+
+	/**
+	 * Returns the Q-table row of a state, creating and initializing it if it doesn't exist yet.
+	 * @param s the state
+	 * @return the row of the state
+	 */
+	protected ConcurrentQTable.Row stateRow(State s){
+		HashableState sh = this.hashingFactory.hashState(s);
+		ConcurrentQTable.Row row = this.qTable.row(sh);
+		if(row == null){
+			List<Action> actions = this.applicableActions(s);
+			double [] qs = new double[actions.size()];
+			for(int i = 0; i < qs.length; i++){
+				qs[i] = this.qinit.qValue(s, actions.get(i));
+			}
+			row = this.qTable.addRow(sh, new ConcurrentQTable.Row(actions.toArray(new Action[actions.size()]), qs));
+		}
+		return row;
+	}
+
+
+	/**
+	 * The learning loop run by one thread, with its own random number generator and statistics.
+	 */
+	protected class Worker {
+
+		protected Random rand;
+		protected LearningReport report = new LearningReport();
+
+		public Worker(Random rand) {
+			this.rand = rand;
+		}
+
+		public void runEpisode(Environment env, int maxSteps, Episode e){
+
+			ConcurrentQTable.Row curRow = stateRow(env.currentObservation());
+			int steps = 0;
+			while(!env.isInTerminalState() && (steps < maxSteps || maxSteps == -1)){
+
+				int i = this.selectActionPosition(curRow);
+				EnvironmentOutcome eo = env.executeAction(curRow.action(i));
+				if(e != null){
+					e.transition(eo);
+				}
+
+				ConcurrentQTable.Row nextRow = eo.terminated ? null : stateRow(eo.op);
+				double maxQ = eo.terminated ? 0. : nextRow.maxQ();
+				double target = eo.r + gamma * maxQ;
+
+				//move the Q-value toward the target with a compare-and-set loop; just before each write, read the next
+				//state's max again to see whether another worker changed it after the target was computed
+				int retries = 0;
+				boolean stale = false;
+				while(true){
+					double q = curRow.q(i);
+					if(!stale && nextRow != null && nextRow.maxQ() != maxQ){
+						stale = true;
+					}
+					if(curRow.compareAndSet(i, q, q + learningRate * (target - q))){
+						break;
+					}
+					retries++;
+				}
+				this.report.updates++;
+				this.report.casRetries += retries;
+				if(retries > 0){
+					this.report.contendedUpdates++;
+				}
+				if(stale){
+					this.report.staleTargets++;
+				}
+
+				curRow = nextRow;
+				steps++;
+			}
+
+			this.report.steps += steps;
+			this.report.episodes++;
+
+		}
+
+		protected int selectActionPosition(ConcurrentQTable.Row row){
+			if(this.rand.nextDouble() < epsilon){
+				return this.rand.nextInt(row.numActions());
+			}
+			int best = 0;
+			double bestQ = row.q(0);
+			int numTies = 1;
+			for(int i = 1; i < row.numActions(); i++){
+				double q = row.q(i);
+				if(q > bestQ){
+					best = i;
+					bestQ = q;
+					numTies = 1;
+				}
+				else if(q == bestQ && this.rand.nextInt(++numTies) == 0){
+					best = i;
+				}
+			}
+			return best;
+		}
+
+	}
+
+
+	/**
+	 * Throughput and contention statistics of a parallel learning run. A contended update is one whose
+	 * compare-and-set failed at least once because another worker changed the same Q-value between the read and
+	 * the write; since such an update is retried from the new value, the contention rate only measures write
+	 * collisions. A stale target is one whose next state max Q-value, read to compute the TD target, had been
+	 * changed by another worker by the time the update was written; the stale rate is the fraction of such updates.
+	 */
+	public static class LearningReport {
+
+		public int workers;
+		public long episodes;
+		public long steps;
+		public long updates;
+		public long contendedUpdates;
+		public long staleTargets;
+		public long casRetries;
+		public long nanos;
+
+		public void add(LearningReport other){
+			this.episodes += other.episodes;
+			this.steps += other.steps;
+			this.updates += other.updates;
+			this.contendedUpdates += other.contendedUpdates;
+			this.staleTargets += other.staleTargets;
+			this.casRetries += other.casRetries;
+		}
+
+		public double stepsPerSecond(){
+			return this.steps / (this.nanos / 1e9);
+		}
+
+		public double contentionRate(){
+			return this.updates == 0 ? 0. : (double)this.contendedUpdates / this.updates;
+		}
+
+		public double staleRate(){
+			return this.updates == 0 ? 0. : (double)this.staleTargets / this.updates;
+		}
+
+		@Override
+		public String toString() {
+			return this.workers + " workers: " + this.episodes + " episodes, " + this.steps + " steps in "
+					+ (this.nanos / 1e6) + "ms (" + (long)this.stepsPerSecond() + " steps/s); contended updates: "
+					+ this.contendedUpdates + " (" + this.contentionRate() + "), stale targets: " + this.staleTargets
+					+ " (" + this.staleRate() + "), CAS retries: " + this.casRetries;
+		}
+	}
+
+
+	public static void main(String[] args) {
+
+		GridWorldDomain gwd = new GridWorldDomain(11, 11);
+		gwd.setMapToFourRooms();
+		gwd.setProbSucceedTransitionDynamics(0.8);
+		gwd.setTf(new GridWorldTerminalFunction(10, 10));
+
+		SADomain domain = gwd.generateDomain();
+
+		//get initial state with agent in 0,0
+		State s = new GridWorldState(new GridAgent(0, 0));
+		StateGenerator sg = new ConstantStateGenerator(s);
+
+		//learn with the same total number of episodes for increasing numbers of workers, then compare
+		//throughput and how good the resulting greedy policy is to see the effect of contention
+		int totalEpisodes = 4000;
+		int maxWorkers = Math.max(4, Runtime.getRuntime().availableProcessors());
+		for(int workers = 1; workers <= maxWorkers; workers *= 2){
+
+			HogwildQLTutorial agent = new HogwildQLTutorial(domain, 0.99, new SimpleHashableStateFactory(),
+					new ConstantValueFunction(), 0.1, 0.1);
+			LearningReport report = agent.learnInParallel(sg, workers, totalEpisodes / workers, -1);
+
+			//evaluate the greedy policy
+			GreedyQPolicy p = new GreedyQPolicy(agent);
+			double avgSteps = 0.;
+			for(int i = 0; i < 100; i++){
+				avgSteps += PolicyUtils.rollout(p, s, domain.getModel(), 200).maxTimeStep() / 100.;
+			}
+
+			System.out.println(report);
+			System.out.println("    greedy policy average steps to goal: " + avgSteps);
+
+		}
+
+	}
+
+}
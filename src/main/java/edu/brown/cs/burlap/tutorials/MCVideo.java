@@ -5,6 +5,7 @@ import burlap.behavior.functionapproximation.dense.NormalizedVariableFeatures;
 import burlap.behavior.functionapproximation.dense.fourier.FourierBasis;
 import burlap.behavior.policy.Policy;
 import burlap.behavior.policy.PolicyUtils;
+import burlap.behavior.singleagent.Episode;
 import burlap.behavior.singleagent.learning.lspi.LSPI;
 import burlap.behavior.singleagent.learning.lspi.SARSCollector;
 import burlap.behavior.singleagent.learning.lspi.SARSData;
@@ -19,6 +20,12 @@ import burlap.mdp.singleagent.common.VisualActionObserver;
 import burlap.mdp.singleagent.environment.SimulatedEnvironment;
 import burlap.mdp.singleagent.environment.extensions.EnvironmentServer;
 import burlap.visualizer.Visualizer;
+import edu.brown.cs.burlap.tutorials.render.EpisodeRenderer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -43,6 +50,58 @@ public class MCVideo {
 		LSPI lspi = new LSPI(domain, 0.99, new DenseCrossProductFeatures(fb, 3), dataset);
 		Policy p = lspi.runPolicyIteration(30, 1e-6);
 
+		//pass "gif" to render the rollouts offscreen to mcVideo.gif instead of watching them in a window
+		if(args.length > 0 && args[0].equals("gif")){
+			renderRollouts(mcGen, domain, p, 100, new File("mcVideo.gif"));
+		}
+		else{
+			watchRollouts(mcGen, domain, p, 100);
+		}
+
+		System.out.println("Finished");
+
+	}
+
+	/**
+	 * Renders rollouts of a policy offscreen on worker threads and writes them to an animated gif. Unlike
+	 * {@link #watchRollouts(MountainCar, SADomain, Policy, int)}, the rollouts are not slowed to display speed and
+	 * no display is needed.
+	 * @param mcGen the mountain car generator of the domain
+	 * @param domain the domain
+	 * @param p the policy to roll out
+	 * @param numRollouts the number of rollouts
+	 * @param file the gif file to write
+	 */
+	public static void renderRollouts(MountainCar mcGen, SADomain domain, Policy p, int numRollouts, File file){
+
+		SimulatedEnvironment env = new SimulatedEnvironment(domain,
+				new MCState(mcGen.physParams.valleyPos(), 0));
+		List<Episode> episodes = new ArrayList<Episode>(numRollouts);
+		for(int i = 0; i < numRollouts; i++){
+			episodes.add(PolicyUtils.rollout(p, env));
+			env.resetEnvironment();
+		}
+
+		EpisodeRenderer renderer = new EpisodeRenderer(MountainCarVisualizer.getStateRenderLayer(mcGen.physParams), 600, 600);
+		try{
+			int numFrames = renderer.writeGif(episodes, file, 33);
+			System.out.println("Wrote " + numFrames + " frames to " + file);
+		}
+		catch(IOException e){
+			throw new RuntimeException(e);
+		}
+
+	}
+
+	/**
+	 * Runs rollouts of a policy while showing each step in a live window.
+	 * @param mcGen the mountain car generator of the domain
+	 * @param domain the domain
+	 * @param p the policy to roll out
+	 * @param numRollouts the number of rollouts
+	 */
+	public static void watchRollouts(MountainCar mcGen, SADomain domain, Policy p, int numRollouts){
+
 		Visualizer v = MountainCarVisualizer.getVisualizer(mcGen);
 		VisualActionObserver vob = new VisualActionObserver(v);
 		vob.initGUI();
@@ -51,13 +110,11 @@ public class MCVideo {
 				new MCState(mcGen.physParams.valleyPos(), 0));
 		EnvironmentServer envServ = new EnvironmentServer(env, vob);
 
-		for(int i = 0; i < 100; i++){
+		for(int i = 0; i < numRollouts; i++){
 			PolicyUtils.rollout(p, envServ);
 			envServ.resetEnvironment();
 		}
 
-		System.out.println("Finished");
-
 	}
 
 }
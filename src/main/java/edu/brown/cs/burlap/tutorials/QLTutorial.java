@@ -1,7 +1,6 @@
 package edu.brown.cs.burlap.tutorials;
 
 import burlap.behavior.policy.EpsilonGreedy;
-import burlap.behavior.policy.Policy;
 import burlap.behavior.singleagent.Episode;
 import burlap.behavior.singleagent.MDPSolver;
 import burlap.behavior.singleagent.auxiliary.EpisodeSequenceVisualizer;
@@ -10,6 +9,7 @@ import burlap.behavior.valuefunction.ConstantValueFunction;
 import burlap.behavior.valuefunction.QFunction;
 import burlap.behavior.valuefunction.QProvider;
 import burlap.behavior.valuefunction.QValue;
+import burlap.debugtools.RandomFactory;
 import burlap.domain.singleagent.gridworld.GridWorldDomain;
 import burlap.domain.singleagent.gridworld.GridWorldTerminalFunction;
 import burlap.domain.singleagent.gridworld.GridWorldVisualizer;
@@ -25,21 +25,57 @@ import burlap.statehashing.HashableState;
 import burlap.statehashing.HashableStateFactory;
 import burlap.statehashing.simple.SimpleHashableStateFactory;
 import burlap.visualizer.Visualizer;
-
+import edu.brown.cs.burlap.tutorials.environment.BatchedEnvironment;
+import edu.brown.cs.burlap.tutorials.tabular.ActionIndex;
+import edu.brown.cs.burlap.tutorials.tabular.Checkpointer;
+import edu.brown.cs.burlap.tutorials.tabular.QTable;
+import edu.brown.cs.burlap.tutorials.tabular.QTableCheckpoint;
+import edu.brown.cs.burlap.tutorials.tabular.ReplayBuffer;
+import edu.brown.cs.burlap.tutorials.tabular.RowEvictionPolicy;
+import edu.brown.cs.burlap.tutorials.tabular.StateCodec;
+
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Random;
 
 /**
  * @author James MacGlashan.
  */
-public class QLTutorial extends MDPSolver implements LearningAgent, QProvider {
+public class QLTutorial extends MDPSolver implements LearningAgent, QProvider, Checkpointer.Source {
 
-	Map<HashableState, List<QValue>> qValues;
+	QTable qTable;
+	ActionIndex actionIndex;
 	QFunction qinit;
 	double learningRate;
-	Policy learningPolicy;
+	double epsilon;
+	Random rand = RandomFactory.getMapped(0);
+
+	/**
+	 * The most recently resolved state and its row, so that consecutive queries about the same state object
+	 * (e.g., a policy asking for Q-values and then a Q-value) only hash it once. The row's generation is saved
+	 * to detect that the row was evicted since. The cache is keyed on object identity, so the environment must not
+	 * modify state objects in place once it has returned them, e.g., by passing a returned state back as the output
+	 * of {@link edu.brown.cs.burlap.tutorials.domain.simple.ExampleGridWorld.GridWorldStateModel#sampleInto}; a
+	 * reused object would be given the row of its previous contents.
+	 */
+	State lastState;
+	int lastRow = -1;
+	int lastGeneration;
+
+	/**
+	 * Stored transitions to replay, and the number of replayed updates made after each real step; no replay if null.
+	 */
+	ReplayBuffer replayBuffer;
+	int replaysPerStep;
+
+	/**
+	 * Writes periodic checkpoints of the Q-table, using the state codec; no checkpoints if null.
+	 */
+	Checkpointer checkpointer;
+	StateCodec stateCodec;
 
 	public QLTutorial(SADomain domain, double gamma, HashableStateFactory hashingFactory,
 					  QFunction qinit, double learningRate, double epsilon){
@@ -47,9 +83,112 @@ public class QLTutorial extends MDPSolver implements LearningAgent, QProvider {
 		this.solverInit(domain, gamma, hashingFactory);
 		this.qinit = qinit;
 		this.learningRate = learningRate;
-		this.qValues = new HashMap<HashableState, List<QValue>>();
-		this.learningPolicy = new EpsilonGreedy(this, epsilon);
+		this.epsilon = epsilon;
+		this.qTable = new QTable();
+		this.actionIndex = new ActionIndex();
+
+	}
+
+	/**
+	 * Bounds the number of states with stored Q-values. Once the bound is reached, storing Q-values for a new state
+	 * evicts the Q-values of a stored state chosen by the eviction policy; an evicted state starts over from its
+	 * initial Q-values if it is seen again. Use {@link #getQTable()} to read the hit, miss and eviction counts.
+	 * @param maxStates the max number of states with stored Q-values, which must be at least 1. The state being
+	 * updated is never evicted, so with a bound of 1 the Q-values of 2 states are stored during an update.
+	 * @param evictionPolicy the policy deciding which states to evict, e.g.,
+	 * {@link RowEvictionPolicy.LeastRecentlyUsed}, {@link RowEvictionPolicy.LeastVisited} or
+	 * {@link RowEvictionPolicy.SmallestQChange}
+	 */
+	public void setMaxStates(int maxStates, RowEvictionPolicy evictionPolicy){
+		this.qTable.setCapacity(maxStates, evictionPolicy);
+	}
 
+	/**
+	 * Returns the Q-table, e.g., to read its hit, miss and eviction counts.
+	 * @return the Q-table
+	 */
+	public QTable getQTable() {
+		return qTable;
+	}
+
+	/**
+	 * Returns the index of the actions stored in the Q-table rows, e.g., to create a
+	 * {@link RowEvictionPolicy.SmallestQChange} policy.
+	 * @return the action index
+	 */
+	public ActionIndex getActionIndex() {
+		return actionIndex;
+	}
+
+	/**
+	 * Enables experience replay: each real environment step is stored in a replay buffer, and after the step's own
+	 * update, replaysPerStep stored transitions are sampled from the buffer and updated again. Replayed updates only
+	 * read and write the Q-table, so they are much cheaper than environment steps. Prioritized replays are scaled by
+	 * the buffer's importance-sampling weights, which correct for sampling some transitions more often than others.
+	 * @param capacity the max number of stored transitions, which must be at least 1
+	 * @param replaysPerStep the number of replayed updates per real step
+	 * @param prioritized whether to sample transitions in proportion to their last TD error rather than uniformly
+	 */
+	public void setExperienceReplay(int capacity, int replaysPerStep, boolean prioritized){
+		this.replayBuffer = new ReplayBuffer(capacity, prioritized);
+		this.replaysPerStep = replaysPerStep;
+	}
+
+	/**
+	 * Disables experience replay.
+	 */
+	public void disableExperienceReplay(){
+		this.replayBuffer = null;
+		this.replaysPerStep = 0;
+	}
+
+	/**
+	 * Enables checkpointing: every episodeInterval learning episodes, the Q-table is written to the file by a
+	 * background thread. Use {@link #restoreCheckpoint(File, StateCodec)} to continue learning from the file after
+	 * a restart.
+	 * @param file the checkpoint file
+	 * @param episodeInterval the number of episodes between checkpoints, which must be at least 1
+	 * @param stateCodec the codec used to write the states of the domain
+	 */
+	public void enableCheckpoints(File file, int episodeInterval, StateCodec stateCodec){
+		this.disableCheckpoints();
+		this.stateCodec = stateCodec;
+		this.checkpointer = new Checkpointer(this, file, episodeInterval);
+	}
+
+	/**
+	 * Disables checkpointing, waiting for any checkpoint still being written.
+	 */
+	public void disableCheckpoints(){
+		if(this.checkpointer != null){
+			this.checkpointer.close();
+			this.checkpointer = null;
+		}
+	}
+
+	/**
+	 * Returns the checkpointer, e.g., to force a checkpoint or check for write errors, or null if checkpointing is
+	 * disabled.
+	 * @return the checkpointer, or null
+	 */
+	public Checkpointer getCheckpointer() {
+		return checkpointer;
+	}
+
+	/**
+	 * Replaces the Q-values learned so far with those in a checkpoint file.
+	 * @param file the checkpoint file
+	 * @param stateCodec the codec used to read the states of the domain
+	 * @throws IOException if the file cannot be read
+	 */
+	public void restoreCheckpoint(File file, StateCodec stateCodec) throws IOException {
+		this.resetSolver();
+		QTableCheckpoint.read(QTableCheckpoint.map(file), this.qTable, this.actionIndex, this.hashingFactory, stateCodec, this.domain);
+	}
+
+	@Override
+	public void writeCheckpoint(DataOutput out) throws IOException {
+		QTableCheckpoint.write(out, this.qTable, this.actionIndex, this.stateCodec);
 	}
 
 	@Override
@@ -64,11 +203,16 @@ public class QLTutorial extends MDPSolver implements LearningAgent, QProvider {
 
 		//behave until a terminal state or max steps is reached
 		State curState = env.currentObservation();
+		int curRow = this.stateRow(curState);
 		int steps = 0;
 		while(!env.isInTerminalState() && (steps < maxSteps || maxSteps == -1)){
 
-			//select an action
-			Action a = this.learningPolicy.action(curState);
+			//keep the current row from being evicted while the next state's row is created
+			this.qTable.pin(curRow);
+
+			//select an action epsilon-greedily from the current state's row
+			int i = this.selectActionPosition(curRow);
+			Action a = this.actionIndex.action(this.qTable.actions(curRow)[i]);
 
 			//take the action and observe outcome
 			EnvironmentOutcome eo = env.executeAction(a);
@@ -76,75 +220,291 @@ public class QLTutorial extends MDPSolver implements LearningAgent, QProvider {
 			//record result
 			e.transition(eo);
 
-			//get the max Q value of the resulting state if it's not terminal, 0 otherwise
-			double maxQ = eo.terminated ? 0. : this.value(eo.op);
+			//resolve the row of the resulting state; it is carried into the next step so that each
+			//transition only hashes one state
+			int nextRow = eo.terminated ? -1 : this.stateRow(eo.op);
 
-			//update the old Q-value
-			QValue oldQ = this.storedQ(curState, a);
-			oldQ.q = oldQ.q + this.learningRate * (eo.r + this.gamma * maxQ - oldQ.q);
+			//update the old Q-value in place in its row
+			double tdError = this.update(curRow, i, eo.r, nextRow, eo.terminated);
 
+			//store the transition and learn from a sample of stored ones
+			if(this.replayBuffer != null){
+				int slot = this.replayBuffer.add(curRow, this.qTable.generation(curRow), i, eo.r,
+						nextRow, eo.terminated ? 0 : this.qTable.generation(nextRow), eo.terminated);
+				this.replayBuffer.updatePriority(slot, tdError);
+				this.replay();
+			}
 
 			//update state pointer to next environment state observed
 			curState = eo.op;
+			curRow = nextRow;
 			steps++;
 
 		}
+		this.qTable.pin(-1);
+
+		if(this.checkpointer != null){
+			this.checkpointer.episodeEnded();
+		}
 
 		return e;
 	}
 
+	/**
+	 * Learns from a batch of environments for a number of batched steps. In each step an action is selected
+	 * epsilon-greedily for every member of the batch, all members are stepped together, and each member's
+	 * transition updates the Q-table as in {@link #runLearningEpisode(Environment, int)}. Members whose episodes end
+	 * are reset by the batch, and learning continues from their new initial states.
+	 * @param env the batch of environments
+	 * @param numSteps the number of batched steps
+	 * @return the number of episodes that ended
+	 */
+	public int runLearningSteps(BatchedEnvironment env, int numSteps){
+		int n = env.size();
+		State [] curStates = new State[n];
+		int [] curRows = new int[n];
+		int [] curGenerations = new int[n];
+		int [] positions = new int[n];
+		Action [] actions = new Action[n];
+
+		State [] observations = env.observations();
+		for(int j = 0; j < n; j++){
+			curStates[j] = observations[j];
+		}
+
+		int episodes = 0;
+		for(int t = 0; t < numSteps; t++){
+
+			//select an action epsilon-greedily from each member's row, which is resolved again only if it has been
+			//evicted since the previous step
+			for(int j = 0; j < n; j++){
+				if(t == 0 || this.qTable.generation(curRows[j]) != curGenerations[j]){
+					curRows[j] = this.stateRow(curStates[j]);
+					curGenerations[j] = this.qTable.generation(curRows[j]);
+				}
+				positions[j] = this.selectActionPosition(curRows[j]);
+				actions[j] = this.actionIndex.action(this.qTable.actions(curRows[j])[positions[j]]);
+			}
+
+			env.step(actions);
+
+			State [] nextStates = env.nextObservations();
+			double [] rewards = env.rewards();
+			boolean [] terminated = env.terminated();
+			boolean [] ended = env.episodeEnded();
+			for(int j = 0; j < n; j++){
+
+				//the row may have been evicted while resolving an earlier member's next row
+				int curRow = curRows[j];
+				if(this.qTable.generation(curRow) != curGenerations[j]){
+					curRow = this.stateRow(curStates[j]);
+				}
+				this.qTable.pin(curRow);
+
+				int nextRow = terminated[j] ? -1 : this.stateRow(nextStates[j]);
+				double tdError = this.update(curRow, positions[j], rewards[j], nextRow, terminated[j]);
+				if(this.replayBuffer != null){
+					int slot = this.replayBuffer.add(curRow, this.qTable.generation(curRow), positions[j], rewards[j],
+							nextRow, terminated[j] ? 0 : this.qTable.generation(nextRow), terminated[j]);
+					this.replayBuffer.updatePriority(slot, tdError);
+					this.replay();
+				}
+
+				//continue from the next state, or from the new initial state if the member was reset
+				if(ended[j]){
+					curStates[j] = observations[j];
+					curGenerations[j] = -1;
+					episodes++;
+					if(this.checkpointer != null){
+						this.checkpointer.episodeEnded();
+					}
+				}
+				else{
+					curStates[j] = nextStates[j];
+					curRows[j] = nextRow;
+					curGenerations[j] = this.qTable.generation(nextRow);
+				}
+			}
+		}
+		this.qTable.pin(-1);
+
+		return episodes;
+	}
+
 	@Override
 	public void resetSolver() {
-		this.qValues.clear();
+		this.qTable.clear();
+		if(this.replayBuffer != null){
+			this.replayBuffer.clear();
+		}
+		this.lastState = null;
+		this.lastRow = -1;
 	}
 
 	@Override
 	public List<QValue> qValues(State s) {
+		//first get the row of the state, creating it if needed
+		int row = this.stateRow(s);
+
+		//copy the row into Q-value objects; modifying them does not change the table
+		int [] actions = this.qTable.actions(row);
+		double [] qs = this.qTable.qs(row);
+		List<QValue> qvs = new ArrayList<QValue>(actions.length);
+		for(int i = 0; i < actions.length; i++){
+			qvs.add(new QValue(s, this.actionIndex.action(actions[i]), qs[i]));
+		}
+
+		return qvs;
+	}
+
+	@Override
+	public double qValue(State s, Action a) {
+		int row = this.stateRow(s);
+		return this.qTable.qs(row)[this.actionPosition(row, a)];
+	}
+
+	@Override
+	public double value(State s) {
+		return this.qTable.maxQ(this.stateRow(s));
+	}
+
+
+	/**
+	 * Moves the Q-value of the action at a row position toward its one-step TD target.
+	 * @param row the row of the state
+	 * @param i the position of the taken action in the row
+	 * @param r the reward received
+	 * @param nextRow the row of the next state, or -1 if it is terminal
+	 * @param terminated whether the next state is terminal
+	 * @return the TD error before the update
+	 */
+	protected double update(int row, int i, double r, int nextRow, boolean terminated){
+		return this.update(row, i, r, nextRow, terminated, this.learningRate);
+	}
+
+	/**
+	 * Moves the Q-value of the action at a row position toward its one-step TD target with a given step size.
+	 * @param row the row of the state
+	 * @param i the position of the taken action in the row
+	 * @param r the reward received
+	 * @param nextRow the row of the next state, or -1 if it is terminal
+	 * @param terminated whether the next state is terminal
+	 * @param stepSize the fraction of the TD error to apply
+	 * @return the TD error before the update
+	 */
+	protected double update(int row, int i, double r, int nextRow, boolean terminated, double stepSize){
+		//get the max Q value of the resulting state if it's not terminal, 0 otherwise
+		double maxQ = terminated ? 0. : this.qTable.maxQ(nextRow);
+
+		double [] qs = this.qTable.qs(row);
+		double tdError = r + this.gamma * maxQ - qs[i];
+		qs[i] = qs[i] + stepSize * tdError;
+		return tdError;
+	}
+
+	/**
+	 * Performs the replayed updates for one real step.
+	 */
+	protected void replay(){
+		for(int k = 0; k < this.replaysPerStep; k++){
+			int slot = this.replayBuffer.sample(this.rand);
+			int row = this.replayBuffer.row(slot);
+			int nextRow = this.replayBuffer.nextRow(slot);
+			boolean terminated = this.replayBuffer.isTerminal(slot);
+
+			//skip transitions whose rows have been evicted, and stop sampling them
+			if(this.qTable.generation(row) != this.replayBuffer.rowGeneration(slot)
+					|| (!terminated && this.qTable.generation(nextRow) != this.replayBuffer.nextRowGeneration(slot))){
+				this.replayBuffer.updatePriority(slot, 0.);
+				continue;
+			}
+
+			//scale the step by the importance-sampling weight to undo the bias of prioritized sampling
+			double stepSize = this.learningRate * this.replayBuffer.importanceWeight(slot);
+			double tdError = this.update(row, this.replayBuffer.position(slot), this.replayBuffer.reward(slot), nextRow,
+					terminated, stepSize);
+			this.replayBuffer.updatePriority(slot, tdError);
+		}
+	}
+
+	/**
+	 * Returns the Q-table row of a state, creating and initializing it if we don't have it stored yet. The state
+	 * must not have been modified in place since it was last passed in; see {@link #lastState}.
+	 * @param s the state
+	 * @return the row of the state
+	 */
+	protected int stateRow(State s){
+		//reuse the row if we just resolved this state and it has not been evicted since
+		if(s == this.lastState && this.qTable.generation(this.lastRow) == this.lastGeneration){
+			this.qTable.touch(this.lastRow);
+			return this.lastRow;
+		}
+
 		//first get hashed state
 		HashableState sh = this.hashingFactory.hashState(s);
 
 		//check if we already have stored values
-		List<QValue> qs = this.qValues.get(sh);
+		int row = this.qTable.row(sh);
 
 		//create and add initialized Q-values if we don't have them stored for this state
-		if(qs == null){
+		if(row == -1){
 			List<Action> actions = this.applicableActions(s);
-			qs = new ArrayList<QValue>(actions.size());
-			//create a Q-value for each action
-			for(Action a : actions){
-				//add q with initialized value
-				qs.add(new QValue(s, a, this.qinit.qValue(s, a)));
+			int [] actionIds = new int[actions.size()];
+			double [] qs = new double[actions.size()];
+			for(int i = 0; i < actionIds.length; i++){
+				Action a = actions.get(i);
+				actionIds[i] = this.actionIndex.index(a);
+				qs[i] = this.qinit.qValue(s, a);
 			}
-			//store this for later
-			this.qValues.put(sh, qs);
+			row = this.qTable.addRow(sh, actionIds, qs);
 		}
 
-		return qs;
-	}
+		this.lastState = s;
+		this.lastRow = row;
+		this.lastGeneration = this.qTable.generation(row);
 
-	@Override
-	public double qValue(State s, Action a) {
-		return storedQ(s, a).q;
+		return row;
 	}
 
+	/**
+	 * Selects the position of an action in a Q-table row epsilon-greedily, breaking ties between max Q-values
+	 * uniformly at random, like {@link EpsilonGreedy}, but without creating Q-value objects.
+	 * @param row the row
+	 * @return the position of the selected action in the row
+	 */
+	protected int selectActionPosition(int row){
+		double [] qs = this.qTable.qs(row);
+		if(this.rand.nextDouble() < this.epsilon){
+			return this.rand.nextInt(qs.length);
+		}
 
-	protected QValue storedQ(State s, Action a){
-		//first get all Q-values
-		List<QValue> qs = this.qValues(s);
-
-		//iterate through stored Q-values to find a match for the input action
-		for(QValue q : qs){
-			if(q.a.equals(a)){
-				return q;
+		//reservoir sample among the max entries so ties are broken uniformly
+		int best = 0;
+		int numTies = 1;
+		for(int i = 1; i < qs.length; i++){
+			if(qs[i] > qs[best]){
+				best = i;
+				numTies = 1;
+			}
+			else if(qs[i] == qs[best] && this.rand.nextInt(++numTies) == 0){
+				best = i;
 			}
 		}
-
-		throw new RuntimeException("Could not find matching Q-value.");
+		return best;
 	}
 
-	@Override
-	public double value(State s) {
-		return QProvider.Helper.maxQ(this, s);
+	/**
+	 * Returns the position of an action in a Q-table row.
+	 * @param row the row
+	 * @param a the action
+	 * @return the position of the action in the row
+	 */
+	protected int actionPosition(int row, Action a){
+		int i = this.qTable.position(row, this.actionIndex.index(a));
+		if(i == -1){
+			throw new RuntimeException("Could not find matching Q-value.");
+		}
+		return i;
 	}
 
 
@@ -167,6 +527,17 @@ public class QLTutorial extends MDPSolver implements LearningAgent, QProvider {
 		QLTutorial agent = new QLTutorial(domain, 0.99, new SimpleHashableStateFactory(),
 				new ConstantValueFunction(), 0.1, 0.1);
 
+		//optionally replay stored transitions after each step
+		//agent.setExperienceReplay(10000, 8, true);
+
+		//optionally bound the number of states with stored Q-values
+		//agent.setMaxStates(50, new RowEvictionPolicy.LeastRecentlyUsed());
+
+		//alternatively, learn from 16 copies of the environment stepped together
+		//BatchedEnvironment batch = new BatchedEnvironment(domain,
+		//		new burlap.mdp.auxiliary.common.ConstantStateGenerator(s), 16);
+		//agent.runLearningSteps(batch, 10000);
+
 		//run Q-learning and store results in a list
 		List<Episode> episodes = new ArrayList<Episode>(1000);
 		for(int i = 0; i < 1000; i++){
@@ -6,7 +6,6 @@ import burlap.behavior.policy.PolicyUtils;
 import burlap.behavior.singleagent.Episode;
 import burlap.behavior.singleagent.MDPSolver;
 import burlap.behavior.singleagent.auxiliary.EpisodeSequenceVisualizer;
-import burlap.behavior.singleagent.auxiliary.StateReachability;
 import burlap.behavior.singleagent.planning.Planner;
 import burlap.behavior.valuefunction.ConstantValueFunction;
 import burlap.behavior.valuefunction.QProvider;
@@ -26,8 +25,15 @@ import burlap.statehashing.HashableState;
 import burlap.statehashing.HashableStateFactory;
 import burlap.statehashing.simple.SimpleHashableStateFactory;
 import burlap.visualizer.Visualizer;
+import edu.brown.cs.burlap.tutorials.tabular.BellmanSweep;
+import edu.brown.cs.burlap.tutorials.tabular.IndexedHeap;
+import edu.brown.cs.burlap.tutorials.tabular.ResidualStats;
+import edu.brown.cs.burlap.tutorials.tabular.StateIndex;
+import edu.brown.cs.burlap.tutorials.tabular.TabularPolicy;
+import edu.brown.cs.burlap.tutorials.tabular.TransitionTable;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * @author James MacGlashan.
@@ -38,6 +44,48 @@ public class VITutorial extends MDPSolver implements Planner, QProvider {
 	protected ValueFunction vinit;
 	protected int numIterations;
 
+	/**
+	 * Planning stops early once the max Bellman residual of a sweep falls below this value.
+	 */
+	protected double maxDelta = 0.;
+
+	/**
+	 * When non-null, states are compiled into this table and their values are stored in {@link #values}
+	 * instead of {@link #valueFunction}.
+	 */
+	protected TransitionTable transitionTable;
+	protected double [] values;
+
+	/**
+	 * When non-null, sweeps over the compiled states are split into chunks and run in this pool.
+	 */
+	protected ForkJoinPool sweepPool;
+	protected int sweepChunkSize = 1024;
+	protected boolean synchronousSweeps;
+	protected double [] nextValues;
+
+	/**
+	 * Whether to back up compiled states in order of their Bellman residual instead of in full sweeps.
+	 */
+	protected boolean prioritizedSweeping;
+	protected IndexedHeap priorityQueue = new IndexedHeap();
+
+	/**
+	 * Compiled states with ids in [planFrom, numStates) are still being planned; planning over them can be
+	 * interrupted by a deadline and resumed. The sweep cursor is the next state id to back up in the current sweep.
+	 */
+	protected int planFrom;
+	protected int sweepCursor;
+	protected double sweepResidual;
+	protected int sweepsDone;
+	protected boolean queueSeeded;
+	protected long backupBudget;
+
+	protected double lastResidual = Double.POSITIVE_INFINITY;
+	protected long totalSweeps;
+	protected long totalBackups;
+	protected long planningNanos;
+
 
 	public VITutorial(SADomain domain, double gamma,
 					  HashableStateFactory hashingFactory, ValueFunction vinit, int numIterations){
@@ -47,8 +95,95 @@ public class VITutorial extends MDPSolver implements Planner, QProvider {
 		this.valueFunction = new HashMap<HashableState, Double>();
 	}
 
+	/**
+	 * Toggles whether reachable states are compiled into a {@link TransitionTable} that assigns each state an int id
+	 * and caches its transitions, so that Bellman sweeps only touch primitive arrays. Changing this setting resets
+	 * the planner.
+	 * @param useCompiledTransitions whether to compile the transition dynamics
+	 */
+	public void toggleCompiledTransitions(boolean useCompiledTransitions){
+		this.resetSolver();
+		if(useCompiledTransitions){
+			this.transitionTable = new TransitionTable((FullModel)this.model, this.actionTypes, this.hashingFactory);
+			this.values = new double[0];
+			if(this.prioritizedSweeping){
+				this.transitionTable.enablePredecessors();
+			}
+		}
+		else{
+			this.transitionTable = null;
+			this.values = null;
+		}
+	}
+
+	/**
+	 * Sets the max Bellman residual threshold: planning stops as soon as no state's value changed by this much or
+	 * more in a sweep, even if fewer than the maximum number of iterations have been run.
+	 * @param maxDelta the max Bellman residual threshold
+	 */
+	public void setMaxDelta(double maxDelta) {
+		this.maxDelta = maxDelta;
+	}
+
+	/**
+	 * Toggles prioritized sweeping. Instead of backing up every state each iteration, states are kept in a priority
+	 * queue ordered by their Bellman residual. After the state with the largest residual is backed up, the residuals
+	 * of its predecessors are recomputed and the queue updated, so backups are only spent where values are changing.
+	 * Planning stops when no state has a residual of at least the max delta, or after the same number of backups that
+	 * the configured number of full sweeps would use. Prioritized sweeping requires compiled transitions (with
+	 * predecessor lists), so this method turns them on if they are not already. It is single-threaded and takes
+	 * precedence over parallel sweeps.
+	 * @param prioritizedSweeping whether to use prioritized sweeping
+	 */
+	public void togglePrioritizedSweeping(boolean prioritizedSweeping){
+		this.prioritizedSweeping = prioritizedSweeping;
+		if(prioritizedSweeping){
+			if(this.transitionTable == null){
+				this.toggleCompiledTransitions(true);
+			}
+			this.transitionTable.enablePredecessors();
+		}
+		this.restartPendingPlanning();
+	}
+
+	/**
+	 * Sets up multi-core Bellman sweeps. Each sweep splits the reachable states into chunks that are backed up
+	 * in a fork/join pool. Synchronous (Jacobi) sweeps back up every state from the previous sweep's values, so
+	 * results are bit-for-bit reproducible regardless of thread count; asynchronous (Gauss-Seidel) sweeps update
+	 * values in place and usually need fewer sweeps, but are not reproducible. Parallel sweeps require compiled
+	 * transitions, so this method turns them on if they are not already.
+	 * @param parallelism the number of worker threads; 0 or less returns to single-threaded in-place sweeps
+	 * @param synchronous true for synchronous (Jacobi) sweeps; false for asynchronous (Gauss-Seidel) sweeps
+	 */
+	public void setParallelSweeps(int parallelism, boolean synchronous){
+		if(this.sweepPool != null){
+			this.sweepPool.shutdown();
+			this.sweepPool = null;
+		}
+		if(parallelism > 0){
+			if(this.transitionTable == null){
+				this.toggleCompiledTransitions(true);
+			}
+			this.sweepPool = new ForkJoinPool(parallelism);
+		}
+		this.synchronousSweeps = synchronous;
+		this.restartPendingPlanning();
+	}
+
+	/**
+	 * Sets the max number of states a single fork/join task backs up without splitting further.
+	 * @param sweepChunkSize the chunk size
+	 */
+	public void setSweepChunkSize(int sweepChunkSize) {
+		this.sweepChunkSize = sweepChunkSize;
+	}
+
 	@Override
 	public double value(State s) {
+		if(this.transitionTable != null){
+			int id = this.transitionTable.stateId(s);
+			return id != -1 ? this.values[id] : vinit.value(s);
+		}
 		Double d = this.valueFunction.get(hashingFactory.hashState(s));
 		if(d == null){
 			return vinit.value(s);
@@ -73,6 +208,14 @@ public class VITutorial extends MDPSolver implements Planner, QProvider {
 			return 0.;
 		}
 
+		if(this.transitionTable != null){
+			int id = this.transitionTable.stateId(s);
+			int sa = id != -1 ? this.transitionTable.saRow(id, a) : -1;
+			if(sa != -1){
+				return this.transitionTable.qValue(sa, this.values, this.gamma);
+			}
+		}
+
 		//what are the possible outcomes?
 		List<TransitionProb> tps = ((FullModel)this.model).transitions(s, a);
 
@@ -96,23 +239,42 @@ public class VITutorial extends MDPSolver implements Planner, QProvider {
 	@Override
 	public GreedyQPolicy planFromState(State initialState) {
 
+		if(this.transitionTable != null){
+			return this.planFromStateCompiled(initialState);
+		}
+
 		HashableState hashedInitialState = this.hashingFactory.hashState(initialState);
 		if(this.valueFunction.containsKey(hashedInitialState)){
 			return new GreedyQPolicy(this); //already performed planning here!
 		}
 
-		//if the state is new, then find all reachable states from it first
-		this.performReachabilityFrom(initialState);
+		long start = System.nanoTime();
+
+		//if the state is new, then find all new states reachable from it first
+		List<HashableState> newStates = this.expandReachableFrom(initialState);
 
-		//now perform multiple iterations over the whole state space
+		//previously planned states cannot reach the new ones, so their values are unaffected
+		//and we only need to perform multiple iterations over the new states
 		for(int i = 0; i < this.numIterations; i++){
 			//iterate over each state
-			for(HashableState sh : this.valueFunction.keySet()){
+			double delta = 0.;
+			for(HashableState sh : newStates){
 				//update its value using the bellman equation
-				this.valueFunction.put(sh, QProvider.Helper.maxQ(this, sh.s()));
+				double v = QProvider.Helper.maxQ(this, sh.s());
+				delta = Math.max(delta, Math.abs(v - this.valueFunction.get(sh)));
+				this.valueFunction.put(sh, v);
+			}
+			this.lastResidual = delta;
+			this.totalSweeps++;
+			this.totalBackups += newStates.size();
+			//stop early if no state changed by much
+			if(delta < this.maxDelta){
+				break;
 			}
 		}
 
+		this.planningNanos += System.nanoTime() - start;
+
 		return new GreedyQPolicy(this);
 
 	}
@@ -120,19 +282,405 @@ public class VITutorial extends MDPSolver implements Planner, QProvider {
 	@Override
 	public void resetSolver() {
 		this.valueFunction.clear();
+		if(this.transitionTable != null){
+			this.transitionTable.clear();
+		}
+		this.planFrom = 0;
+		this.restartPendingPlanning();
+		this.priorityQueue.clear();
+		this.lastResidual = Double.POSITIVE_INFINITY;
+		this.totalSweeps = 0;
+		this.totalBackups = 0;
+		this.planningNanos = 0;
 	}
 
 	public void performReachabilityFrom(State seedState){
 
-		Set<HashableState> hashedStates = StateReachability.getReachableHashedStates(seedState, this.domain, this.hashingFactory);
+		if(this.transitionTable != null){
+			this.compileReachableFrom(seedState);
+			return;
+		}
+
+		this.expandReachableFrom(seedState);
+
+	}
+
+	/**
+	 * Finds all states reachable from the seed state that are not already in the value function and initializes
+	 * their values. The search does not expand past known states, since everything reachable from them is
+	 * already known.
+	 * @param seedState the state from which to search
+	 * @return the newly found states
+	 */
+	protected List<HashableState> expandReachableFrom(State seedState){
+
+		List<HashableState> newStates = new ArrayList<HashableState>();
+
+		HashableState hashedSeed = this.hashingFactory.hashState(seedState);
+		if(this.valueFunction.containsKey(hashedSeed)){
+			return newStates;
+		}
+
+		//initialize the value function for all new states as they are found
+		this.valueFunction.put(hashedSeed, this.vinit.value(seedState));
+		newStates.add(hashedSeed);
+
+		LinkedList<HashableState> openList = new LinkedList<HashableState>();
+		openList.offer(hashedSeed);
+		while(!openList.isEmpty()){
+			HashableState sh = openList.poll();
+			for(Action a : this.applicableActions(sh.s())){
+				for(TransitionProb tp : ((FullModel)this.model).transitions(sh.s(), a)){
+					HashableState nsh = this.hashingFactory.hashState(tp.eo.op);
+					if(!this.valueFunction.containsKey(nsh)){
+						this.valueFunction.put(nsh, this.vinit.value(nsh.s()));
+						newStates.add(nsh);
+						openList.offer(nsh);
+					}
+				}
+			}
+		}
+
+		return newStates;
+	}
+
+
+	/**
+	 * Plans from the given state for at most (approximately) the given wall-clock budget and returns the greedy
+	 * policy for the values found so far. Planning is interruptible and resumable: if the budget runs out, the
+	 * position in the current sweep (or the prioritized sweeping queue) is kept, and the next call to this method
+	 * or to {@link #planFromState(State)} continues where this one stopped. Use {@link #getPlanningStats()} to see
+	 * how good the returned policy is. Compiling newly reachable states is not interruptible, so the first call
+	 * from a new region of the state space may exceed the budget. Requires compiled transitions.
+	 * @param initialState the state from which to plan
+	 * @param maxMillis the planning budget in milliseconds
+	 * @return a greedy policy over the current values
+	 */
+	public GreedyQPolicy planFromState(State initialState, long maxMillis){
+		if(this.transitionTable == null){
+			throw new IllegalStateException("Deadline-bounded planning requires compiled transitions; call toggleCompiledTransitions(true) first.");
+		}
+		return this.planCompiled(initialState, System.nanoTime() + maxMillis * 1000000L);
+	}
+
+	/**
+	 * Returns statistics about the planning performed so far, including the max Bellman residual of the current
+	 * values, which bounds how far the greedy policy is from optimal.
+	 * @return statistics about the planning performed so far
+	 */
+	public ResidualStats getPlanningStats(){
+		int n = this.transitionTable != null ? this.transitionTable.numStates() : this.valueFunction.size();
+		double residual = this.lastResidual;
+		if(this.prioritizedSweeping && this.queueSeeded){
+			//states in the queue have up-to-date residuals; all others are below the threshold
+			residual = this.priorityQueue.isEmpty() ? this.maxDelta : -this.priorityQueue.peekKey();
+		}
+		boolean finished = this.transitionTable != null ? this.planFrom >= n : true;
+		return new ResidualStats(residual, finished, n, this.totalSweeps, this.totalBackups, this.planningNanos);
+	}
+
+	/**
+	 * Compiles the greedy policy of the current values into a {@link TabularPolicy} that maps each planned state's
+	 * id to its best action, so that executing the policy no longer computes Q-values. Ties are broken in favor of
+	 * the first applicable action, rather than randomly as in {@link GreedyQPolicy}. With compiled transitions, the
+	 * policy shares this planner's state index, so it remains valid as more states are planned, but not after
+	 * {@link #resetSolver()}.
+	 * @return the compiled greedy policy
+	 */
+	public TabularPolicy compilePolicy(){
+
+		if(this.transitionTable != null){
+			int n = this.transitionTable.numStates();
+			TabularPolicy policy = new TabularPolicy(this.hashingFactory, this.transitionTable.getIndex(), n);
+			for(int id = 0; id < n; id++){
+				int best = -1;
+				double bestQ = Double.NEGATIVE_INFINITY;
+				for(int sa = this.transitionTable.firstSA(id); sa < this.transitionTable.firstSA(id+1); sa++){
+					double q = this.transitionTable.qValue(sa, this.values, this.gamma);
+					if(q > bestQ){
+						bestQ = q;
+						best = sa;
+					}
+				}
+				//terminal states have no actions and are left undefined
+				if(best != -1){
+					policy.setAction(id, this.transitionTable.action(best));
+				}
+			}
+			return policy.compact();
+		}
 
-		//initialize the value function for all states
-		for(HashableState hs : hashedStates){
-			if(!this.valueFunction.containsKey(hs)){
-				this.valueFunction.put(hs, this.vinit.value(hs.s()));
+		StateIndex index = new StateIndex(this.valueFunction.size());
+		for(HashableState sh : this.valueFunction.keySet()){
+			index.add(sh);
+		}
+		TabularPolicy policy = new TabularPolicy(this.hashingFactory, index, index.size());
+		for(int id = 0; id < index.size(); id++){
+			State s = index.state(id).s();
+			if(this.model.terminal(s)){
+				continue;
+			}
+			QValue best = null;
+			for(QValue q : this.qValues(s)){
+				if(best == null || q.q > best.q){
+					best = q;
+				}
+			}
+			if(best != null){
+				policy.setAction(id, best.a);
 			}
 		}
+		return policy.compact();
+	}
 
+	protected GreedyQPolicy planFromStateCompiled(State initialState){
+		return this.planCompiled(initialState, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Compiles any new states reachable from the initial state and continues planning until it finishes or the
+	 * deadline passes.
+	 * @param initialState the state from which to plan
+	 * @param deadline the {@link System#nanoTime()} by which to stop, or {@link Long#MAX_VALUE} for no deadline
+	 * @return a greedy policy over the current values
+	 */
+	protected GreedyQPolicy planCompiled(State initialState, long deadline){
+
+		long start = System.nanoTime();
+
+		//if the state is new, then compile all new states reachable from it first
+		if(this.transitionTable.stateId(initialState) == -1){
+			this.compileReachableFrom(initialState);
+		}
+
+		//previously planned states cannot reach the new ones, so we only need to back up the pending
+		//states, touching only the value array
+		if(this.prioritizedSweeping){
+			this.continuePrioritizedSweeps(deadline);
+		}
+		else{
+			this.continueSweeps(deadline);
+		}
+
+		this.planningNanos += System.nanoTime() - start;
+
+		return new GreedyQPolicy(this);
+	}
+
+	/**
+	 * Continues sweeps over the pending state ids [planFrom, numStates) from the sweep cursor until planning
+	 * finishes or the deadline passes. The deadline is checked after each block of states.
+	 * @param deadline the {@link System#nanoTime()} by which to stop, or {@link Long#MAX_VALUE} for no deadline
+	 * @return true if planning finished; false if the deadline passed first
+	 */
+	protected boolean continueSweeps(long deadline){
+
+		int n = this.transitionTable.numStates();
+		int blockSize = this.sweepPool == null ? 4096 : this.sweepChunkSize * this.sweepPool.getParallelism() * 4;
+
+		while(this.planFrom < n && this.sweepsDone < this.numIterations){
+
+			while(this.sweepCursor < n){
+				int end = Math.min(n, this.sweepCursor + blockSize);
+				this.sweepResidual = Math.max(this.sweepResidual, this.sweepBlock(this.sweepCursor, end));
+				this.totalBackups += end - this.sweepCursor;
+				this.sweepCursor = end;
+				if(this.sweepCursor < n && !hasTimeLeft(deadline)){
+					return false;
+				}
+			}
+
+			//finished a sweep
+			if(this.sweepPool != null && this.synchronousSweeps){
+				//states outside the pending range were not backed up, so carry them over before swapping
+				System.arraycopy(this.values, 0, this.nextValues, 0, this.planFrom);
+				double [] tmp = this.values;
+				this.values = this.nextValues;
+				this.nextValues = tmp;
+			}
+			this.lastResidual = this.sweepResidual;
+			this.sweepResidual = 0.;
+			this.sweepCursor = this.planFrom;
+			this.sweepsDone++;
+			this.totalSweeps++;
+
+			if(this.lastResidual < this.maxDelta){
+				break;
+			}
+			if(this.sweepsDone < this.numIterations && !hasTimeLeft(deadline)){
+				return false;
+			}
+
+		}
+
+		this.planFrom = n;
+		return true;
+	}
+
+	/**
+	 * Backs up the compiled state ids [from, to) as part of the current sweep. Synchronous parallel sweeps write
+	 * into {@link #nextValues}, which replaces {@link #values} when the sweep completes; other modes update in place.
+	 * @param from the first state id to back up (inclusive)
+	 * @param to the last state id to back up (exclusive)
+	 * @return the max absolute change in value over the backed up states
+	 */
+	protected double sweepBlock(int from, int to){
+
+		if(this.sweepPool == null){
+			return BellmanSweep.sweep(this.transitionTable, this.values, this.values, this.gamma, from, to);
+		}
+
+		double [] dst = this.values;
+		if(this.synchronousSweeps){
+			if(this.nextValues == null || this.nextValues.length != this.values.length){
+				this.nextValues = new double[this.values.length];
+			}
+			dst = this.nextValues;
+		}
+
+		return BellmanSweep.sweep(this.sweepPool, this.transitionTable, this.values, dst, this.gamma,
+				from, to, this.sweepChunkSize);
+	}
+
+	/**
+	 * Continues prioritized sweeping until the queue empties, the backup budget is used, or the deadline passes.
+	 * The first call after new states are compiled seeds the queue with the pending state ids
+	 * [planFrom, numStates); changes are propagated to any predecessor, including states outside of that range.
+	 * @param deadline the {@link System#nanoTime()} by which to stop, or {@link Long#MAX_VALUE} for no deadline
+	 * @return true if planning finished; false if the deadline passed first
+	 */
+	protected boolean continuePrioritizedSweeps(long deadline){
+
+		int n = this.transitionTable.numStates();
+		if(this.planFrom >= n){
+			return true;
+		}
+
+		if(!this.queueSeeded){
+			this.seedPriorityQueue(this.planFrom, n);
+		}
+
+		int sinceCheck = 0;
+		while(!this.priorityQueue.isEmpty() && this.backupBudget > 0){
+
+			int id = this.priorityQueue.poll();
+			this.values[id] = this.transitionTable.backup(id, this.values, this.gamma);
+			this.backupBudget--;
+			this.totalBackups++;
+
+			//the change may have affected any state that can transition into this one
+			int [] preds = this.transitionTable.predecessors(id);
+			int numPreds = this.transitionTable.numPredecessors(id);
+			for(int i = 0; i < numPreds; i++){
+				this.prioritize(preds[i]);
+			}
+
+			if(++sinceCheck == 256){
+				sinceCheck = 0;
+				if(!hasTimeLeft(deadline)){
+					return false;
+				}
+			}
+
+		}
+
+		//remaining queued states are above the threshold only if the backup budget ran out
+		this.lastResidual = this.priorityQueue.isEmpty() ? this.maxDelta : -this.priorityQueue.peekKey();
+		this.planFrom = n;
+		this.queueSeeded = false;
+		return true;
+	}
+
+	/**
+	 * Adds the compiled state ids [from, to) to the priority queue and adds the backups that full sweeps over
+	 * them would use to the budget.
+	 * @param from the first state id (inclusive)
+	 * @param to the last state id (exclusive)
+	 */
+	protected void seedPriorityQueue(int from, int to){
+		if(!this.queueSeeded){
+			this.priorityQueue.clear();
+			this.backupBudget = 0;
+			this.queueSeeded = true;
+		}
+		for(int id = from; id < to; id++){
+			this.prioritize(id);
+		}
+		this.backupBudget += (long)this.numIterations * (to - from);
+	}
+
+	/**
+	 * Recomputes the Bellman residual of a compiled state and updates its place in the priority queue, removing it
+	 * if its residual is below the max delta.
+	 * @param id the state id
+	 */
+	protected void prioritize(int id){
+		double residual = Math.abs(this.transitionTable.backup(id, this.values, this.gamma) - this.values[id]);
+		if(residual > 0. && residual >= this.maxDelta){
+			//the heap pops the smallest key first, so order by the negated residual
+			this.priorityQueue.update(id, -residual);
+		}
+		else{
+			this.priorityQueue.remove(id);
+		}
+	}
+
+	/**
+	 * Restarts the current sweep (or the prioritized sweeping queue) over the pending states, e.g., because the
+	 * sweep settings changed part way through.
+	 */
+	protected void restartPendingPlanning(){
+		this.sweepCursor = this.planFrom;
+		this.sweepResidual = 0.;
+		this.sweepsDone = 0;
+		this.queueSeeded = false;
+	}
+
+	/**
+	 * Compiles all states reachable from the seed state that are not already compiled, initializes their values,
+	 * and adds them to the states pending planning.
+	 * @param seedState the state from which to search
+	 * @return the id of the first newly compiled state; new states have ids in [firstNew, numStates)
+	 */
+	protected int compileReachableFrom(State seedState){
+
+		int firstNew = this.transitionTable.expandFrom(seedState);
+		int n = this.transitionTable.numStates();
+		if(firstNew == n){
+			return firstNew;
+		}
+
+		//initialize the value function for all new states
+		if(n > this.values.length){
+			int newLength = Math.max(n, this.values.length * 2);
+			this.values = Arrays.copyOf(this.values, newLength);
+			if(this.nextValues != null){
+				this.nextValues = Arrays.copyOf(this.nextValues, newLength);
+			}
+		}
+		for(int id = firstNew; id < n; id++){
+			this.values[id] = this.vinit.value(this.transitionTable.state(id).s());
+		}
+
+		//the new states have never been backed up, so no residual measured so far bounds theirs
+		this.lastResidual = Double.POSITIVE_INFINITY;
+
+		if(this.planFrom >= firstNew){
+			//nothing was pending, so start planning over just the new states
+			this.planFrom = firstNew;
+			this.restartPendingPlanning();
+		}
+		else if(this.queueSeeded){
+			//an interrupted prioritized sweep is in progress, so add the new states to its queue
+			this.seedPriorityQueue(firstNew, n);
+		}
+		//an interrupted sweep simply continues over the new states, which are at the end of the range
+
+		return firstNew;
+	}
+
+	protected static boolean hasTimeLeft(long deadline){
+		return deadline == Long.MAX_VALUE || System.nanoTime() - deadline < 0;
 	}
 
 
@@ -156,9 +704,26 @@ public class VITutorial extends MDPSolver implements Planner, QProvider {
 		VITutorial vi = new VITutorial(domain, 0.99, new SimpleHashableStateFactory(),
 				new ConstantValueFunction(0.0), 30);
 
+		//uncomment to compile the reachable states into primitive arrays before planning
+		//vi.toggleCompiledTransitions(true);
+
+		//uncomment to run reproducible (synchronous) sweeps on all available cores
+		//vi.setParallelSweeps(Runtime.getRuntime().availableProcessors(), true);
+
+		//uncomment to stop once values change by less than 0.001, backing up the states that change most first
+		//vi.setMaxDelta(0.001);
+		//vi.togglePrioritizedSweeping(true);
+
 		//run planning from our initial state
 		Policy p = vi.planFromState(s);
 
+		//with compiled transitions, you can instead plan within a time budget; repeated calls resume planning
+		//Policy p = vi.planFromState(s, 20);
+		//System.out.println(vi.getPlanningStats());
+
+		//uncomment to execute a table lookup policy instead of computing Q-values at every step
+		//p = vi.compilePolicy();
+
 		//evaluate the policy with one roll out visualize the trajectory
 		Episode ea = PolicyUtils.rollout(p, s, domain.getModel());
 
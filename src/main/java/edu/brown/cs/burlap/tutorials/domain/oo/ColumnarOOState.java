@@ -0,0 +1,491 @@
+package edu.brown.cs.burlap.tutorials.domain.oo;
+
+import burlap.mdp.core.oo.state.MutableOOState;
+import burlap.mdp.core.oo.state.OOState;
+import burlap.mdp.core.oo.state.OOStateUtilities;
+import burlap.mdp.core.oo.state.OOVariableKey;
+import burlap.mdp.core.oo.state.ObjectInstance;
+import burlap.mdp.core.oo.state.exceptions.UnknownClassException;
+import burlap.mdp.core.oo.state.exceptions.UnknownObjectException;
+import burlap.mdp.core.state.MutableState;
+import burlap.mdp.core.state.State;
+import burlap.mdp.core.state.StateUtilities;
+import burlap.mdp.core.state.UnknownKeyException;
+import burlap.statehashing.HashableState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static edu.brown.cs.burlap.tutorials.domain.oo.ExampleOOGridWorld.*;
+
+/**
+ * A columnar {@link MutableOOState} for {@link ExampleOOGridWorld}. Rather than holding each agent and location as its
+ * own object, the state stores each class's variables packed row by row in an int array, with the object names in a
+ * parallel array. Objects returned by {@link #object(String)}, {@link #objects()} and {@link #objectsOfClass(String)}
+ * are built from the arrays when asked for, so modifying them does not change the state; use {@link #set(Object, Object)}
+ * or {@link #setAgentPosition(int, int)} instead.
+ * <p>
+ * The state is its own {@link HashableState} and, unlike {@link PersistentOOState}, it is hashed and compared
+ * independently of object names, as with BURLAP's identifier independent hashing. Each class column keeps a canonical
+ * copy of its rows sorted by value, so that states holding the same objects in any order or under any names have the
+ * same canonical arrays, and hashing and equality are loops over ints. The canonical rows and their hash are computed
+ * once per column and cached.
+ * <p>
+ * Copying a state shares its columns and a column is copied before it is changed, so the locations, which the grid
+ * world's model never changes, are stored, sorted and hashed once for every state reached from the same initial state.
+ */
+public class ColumnarOOState implements MutableOOState, HashableState {
+
+	protected static final int AGENTS = 0;
+	protected static final int LOCATIONS = 1;
+
+	/**
+	 * The objects of one class. Rows are kept in insertion order; the canonical rows, hash and name lookup are built when
+	 * first needed and dropped when the column changes. The names and name lookup are shared between copies of a column
+	 * until its names change. The lazily built name lookup and canonical rows are volatile, and the hash is written
+	 * before the canonical rows, so an unmodified column can be hashed and compared from several threads at once.
+	 */
+	protected static final class Column {
+
+		final String className;
+		final List<Object> keys;
+		final int stride;
+
+		String [] names;
+		int [] values;
+		int size;
+		boolean sharedNames;
+
+		volatile Map<String, Integer> rows;
+		volatile int [] canonical;
+		int hash;
+
+		Column(String className, List<Object> keys, int capacity) {
+			this.className = className;
+			this.keys = keys;
+			this.stride = keys.size();
+			this.names = new String[capacity];
+			this.values = new int[capacity * this.stride];
+		}
+
+		Column copy(){
+			Column c = new Column(this.className, this.keys, 0);
+			c.names = this.names;
+			c.rows = this.rows;
+			c.sharedNames = true;
+			this.sharedNames = true;
+			c.values = Arrays.copyOf(this.values, Math.max(this.size, 1) * this.stride);
+			c.size = this.size;
+			return c;
+		}
+
+		int row(String name){
+			if(this.size <= 8){
+				for(int r = 0; r < this.size; r++){
+					if(this.names[r].equals(name)){
+						return r;
+					}
+				}
+				return -1;
+			}
+			Map<String, Integer> rows = this.rows;
+			if(rows == null){
+				rows = new HashMap<String, Integer>(this.size * 2);
+				for(int r = 0; r < this.size; r++){
+					rows.put(this.names[r], r);
+				}
+				this.rows = rows;
+			}
+			Integer r = rows.get(name);
+			return r == null ? -1 : r;
+		}
+
+		int varIndex(Object key){
+			int v = this.keys.indexOf(key);
+			if(v == -1){
+				throw new UnknownKeyException(key);
+			}
+			return v;
+		}
+
+		ExGridAgent object(int r){
+			int i = r * this.stride;
+			if(this.className.equals(CLASS_AGENT)){
+				return new ExGridAgent(this.values[i], this.values[i + 1], this.names[r]);
+			}
+			return new EXGridLocation(this.values[i], this.values[i + 1], this.values[i + 2], this.names[r]);
+		}
+
+		void add(String name, ObjectInstance ob){
+			this.ownNames();
+			if(this.size == this.names.length){
+				this.names = Arrays.copyOf(this.names, Math.max(4, this.size * 2));
+			}
+			if((this.size + 1) * this.stride > this.values.length){
+				this.values = Arrays.copyOf(this.values, this.names.length * this.stride);
+			}
+			this.names[this.size] = name;
+			for(int v = 0; v < this.stride; v++){
+				this.values[this.size * this.stride + v] = StateUtilities.stringOrNumber(ob.get(this.keys.get(v))).intValue();
+			}
+			this.size++;
+			this.rows = null;
+			this.changed();
+		}
+
+		void remove(int r){
+			this.ownNames();
+			System.arraycopy(this.names, r + 1, this.names, r, this.size - r - 1);
+			System.arraycopy(this.values, (r + 1) * this.stride, this.values, r * this.stride, (this.size - r - 1) * this.stride);
+			this.size--;
+			this.names[this.size] = null;
+			this.rows = null;
+			this.changed();
+		}
+
+		void rename(int r, String name){
+			this.ownNames();
+			this.names[r] = name;
+			this.rows = null;
+		}
+
+		void set(int r, int v, int value){
+			this.values[r * this.stride + v] = value;
+			this.changed();
+		}
+
+		void changed(){
+			this.canonical = null;
+		}
+
+		void ownNames(){
+			if(this.sharedNames){
+				this.names = this.names.clone();
+				this.sharedNames = false;
+			}
+		}
+
+		/**
+		 * Returns the rows sorted in lexicographic order of their values, packed like the values.
+		 */
+		int [] canonical(){
+			int [] c = this.canonical;
+			if(c == null){
+				c = new int[this.size * this.stride];
+				if(this.size <= 1){
+					System.arraycopy(this.values, 0, c, 0, c.length);
+				}
+				else{
+					Integer [] order = new Integer[this.size];
+					for(int r = 0; r < this.size; r++){
+						order[r] = r;
+					}
+					final int [] vals = this.values;
+					final int stride = this.stride;
+					Arrays.sort(order, new Comparator<Integer>() {
+						@Override
+						public int compare(Integer a, Integer b) {
+							return compareRows(vals, a * stride, vals, b * stride, stride);
+						}
+					});
+					for(int k = 0; k < this.size; k++){
+						System.arraycopy(this.values, order[k] * this.stride, c, k * this.stride, this.stride);
+					}
+				}
+				int h = this.size;
+				for(int v : c){
+					h = h * 31 + v;
+				}
+				//the hash is written first, so a thread that sees the canonical rows also sees their hash
+				this.hash = h;
+				this.canonical = c;
+			}
+			return c;
+		}
+
+		int hash(){
+			this.canonical();
+			return this.hash;
+		}
+
+		/**
+		 * Returns whether some row starts with the given values, by binary search of the canonical rows.
+		 */
+		boolean containsPrefix(int [] prefix){
+			int [] c = this.canonical();
+			int lo = 0;
+			int hi = this.size - 1;
+			while(lo <= hi){
+				int mid = (lo + hi) >>> 1;
+				int cmp = compareRows(c, mid * this.stride, prefix, 0, prefix.length);
+				if(cmp < 0){
+					lo = mid + 1;
+				}
+				else if(cmp > 0){
+					hi = mid - 1;
+				}
+				else{
+					return true;
+				}
+			}
+			return false;
+		}
+
+		boolean valuesEqual(Column o){
+			return this == o || (this.size == o.size && this.hash() == o.hash() && Arrays.equals(this.canonical(), o.canonical()));
+		}
+
+		static int compareRows(int [] a, int i, int [] b, int j, int len){
+			for(int v = 0; v < len; v++){
+				if(a[i + v] != b[j + v]){
+					return a[i + v] < b[j + v] ? -1 : 1;
+				}
+			}
+			return 0;
+		}
+
+	}
+
+
+	protected Column [] columns;
+
+	/**
+	 * A bit for each column that is shared with another state and must be copied before it is changed.
+	 */
+	protected int sharedColumns;
+
+
+	public ColumnarOOState() {
+		this.columns = emptyColumns();
+	}
+
+	/**
+	 * Copies a state. A columnar state is copied by sharing its columns; any other state's objects are added one by one.
+	 * @param s the state to copy
+	 */
+	public ColumnarOOState(OOState s) {
+		if(s instanceof ColumnarOOState){
+			ColumnarOOState cs = (ColumnarOOState)s;
+			this.columns = cs.columns.clone();
+			this.sharedColumns = (1 << this.columns.length) - 1;
+			cs.sharedColumns = this.sharedColumns;
+		}
+		else{
+			this.columns = emptyColumns();
+			for(ObjectInstance ob : s.objects()){
+				this.addObject(ob);
+			}
+		}
+	}
+
+	public ColumnarOOState(ObjectInstance... objects) {
+		this.columns = emptyColumns();
+		for(ObjectInstance ob : objects){
+			this.addObject(ob);
+		}
+	}
+
+	@Override
+	public ColumnarOOState copy() {
+		return new ColumnarOOState(this);
+	}
+
+	/**
+	 * Moves the agent named {@link ExampleOOGridWorld#CLASS_AGENT}, which is how the grid world's model changes a state.
+	 * @param x the new x position
+	 * @param y the new y position
+	 */
+	public void setAgentPosition(int x, int y){
+		int r = this.columns[AGENTS].row(CLASS_AGENT);
+		if(r == -1){
+			throw new UnknownObjectException(CLASS_AGENT);
+		}
+		Column agents = this.ownColumn(AGENTS);
+		agents.set(r, 0, x);
+		agents.set(r, 1, y);
+	}
+
+	/**
+	 * Returns whether any agent is at the same cell as a location, by binary search of the locations' canonical rows
+	 * for each agent.
+	 * @return whether an agent is at a location
+	 */
+	public boolean someAgentAtLocation(){
+		Column agents = this.columns[AGENTS];
+		Column locations = this.columns[LOCATIONS];
+		int [] cell = new int[2];
+		for(int r = 0; r < agents.size; r++){
+			cell[0] = agents.values[r * agents.stride];
+			cell[1] = agents.values[r * agents.stride + 1];
+			if(locations.containsPrefix(cell)){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public int numObjects() {
+		return this.columns[AGENTS].size + this.columns[LOCATIONS].size;
+	}
+
+	@Override
+	public ObjectInstance object(String oname) {
+		for(Column c : this.columns){
+			int r = c.row(oname);
+			if(r != -1){
+				return c.object(r);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public List<ObjectInstance> objects() {
+		List<ObjectInstance> obs = new ArrayList<ObjectInstance>(this.numObjects());
+		for(Column c : this.columns){
+			for(int r = 0; r < c.size; r++){
+				obs.add(c.object(r));
+			}
+		}
+		return obs;
+	}
+
+	@Override
+	public List<ObjectInstance> objectsOfClass(String oclass) {
+		for(Column c : this.columns){
+			if(c.className.equals(oclass)){
+				List<ObjectInstance> obs = new ArrayList<ObjectInstance>(c.size);
+				for(int r = 0; r < c.size; r++){
+					obs.add(c.object(r));
+				}
+				return obs;
+			}
+		}
+		return new ArrayList<ObjectInstance>(0);
+	}
+
+	@Override
+	public MutableOOState addObject(ObjectInstance o) {
+		if(this.object(o.name()) != null){
+			throw new RuntimeException("Could not add object " + o.name() + " because an object with that name already exists.");
+		}
+		this.ownColumn(this.columnIndex(o.className())).add(o.name(), o);
+		return this;
+	}
+
+	@Override
+	public MutableOOState removeObject(String oname) {
+		for(int i = 0; i < this.columns.length; i++){
+			int r = this.columns[i].row(oname);
+			if(r != -1){
+				this.ownColumn(i).remove(r);
+				break;
+			}
+		}
+		return this;
+	}
+
+	@Override
+	public MutableOOState renameObject(String objectName, String newName) {
+		for(int i = 0; i < this.columns.length; i++){
+			int r = this.columns[i].row(objectName);
+			if(r != -1){
+				this.ownColumn(i).rename(r, newName);
+				return this;
+			}
+		}
+		throw new UnknownObjectException(objectName);
+	}
+
+	@Override
+	public MutableState set(Object variableKey, Object value) {
+		OOVariableKey key = OOStateUtilities.generateKey(variableKey);
+		for(int i = 0; i < this.columns.length; i++){
+			int r = this.columns[i].row(key.obName);
+			if(r != -1){
+				int v = this.columns[i].varIndex(key.obVarKey);
+				this.ownColumn(i).set(r, v, StateUtilities.stringOrNumber(value).intValue());
+				return this;
+			}
+		}
+		throw new UnknownObjectException(key.obName);
+	}
+
+	@Override
+	public List<Object> variableKeys() {
+		return OOStateUtilities.flatStateKeys(this);
+	}
+
+	@Override
+	public Object get(Object variableKey) {
+		OOVariableKey key = OOStateUtilities.generateKey(variableKey);
+		for(Column c : this.columns){
+			int r = c.row(key.obName);
+			if(r != -1){
+				return c.values[r * c.stride + c.varIndex(key.obVarKey)];
+			}
+		}
+		throw new UnknownObjectException(key.obName);
+	}
+
+	@Override
+	public State s() {
+		return this;
+	}
+
+	@Override
+	public int hashCode() {
+		return this.columns[AGENTS].hash() * 31 + this.columns[LOCATIONS].hash();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj){
+			return true;
+		}
+		if(!(obj instanceof ColumnarOOState)){
+			return false;
+		}
+		ColumnarOOState o = (ColumnarOOState)obj;
+		for(int i = 0; i < this.columns.length; i++){
+			if(!this.columns[i].valuesEqual(o.columns[i])){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return OOStateUtilities.ooStateToString(this);
+	}
+
+	protected static Column [] emptyColumns(){
+		return new Column[]{
+				new Column(CLASS_AGENT, Arrays.<Object>asList(VAR_X, VAR_Y), 1),
+				new Column(CLASS_LOCATION, Arrays.<Object>asList(VAR_X, VAR_Y, VAR_TYPE), 8)};
+	}
+
+	protected int columnIndex(String className){
+		for(int i = 0; i < this.columns.length; i++){
+			if(this.columns[i].className.equals(className)){
+				return i;
+			}
+		}
+		throw new UnknownClassException(className);
+	}
+
+	protected Column ownColumn(int i){
+		if((this.sharedColumns & (1 << i)) != 0){
+			this.columns[i] = this.columns[i].copy();
+			this.sharedColumns &= ~(1 << i);
+		}
+		return this.columns[i];
+	}
+
+}
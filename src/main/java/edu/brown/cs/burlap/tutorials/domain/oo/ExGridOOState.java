@@ -0,0 +1,125 @@
+package edu.brown.cs.burlap.tutorials.domain.oo;
+
+import burlap.mdp.core.oo.state.MutableOOState;
+import burlap.mdp.core.oo.state.OOState;
+import burlap.mdp.core.oo.state.ObjectInstance;
+
+import java.util.List;
+
+import static edu.brown.cs.burlap.tutorials.domain.oo.ExampleOOGridWorld.CLASS_AGENT;
+import static edu.brown.cs.burlap.tutorials.domain.oo.ExampleOOGridWorld.CLASS_LOCATION;
+
+/**
+ * A {@link PersistentOOState} for {@link ExampleOOGridWorld} that also keeps a {@link LocationIndex} of its locations,
+ * so that which locations are at a cell can be answered in O(1). Like the locations themselves, the index is built
+ * when first queried and is shared with copies of the state, which is free in this domain because the state model
+ * only ever moves the agent.
+ * Adding or removing a location updates the index, copying it first if it is shared. Touching a location, including
+ * by setting one of its variables, drops the index to be rebuilt on the next query, since the touched copy may be
+ * changed afterwards. The index field is volatile, so an index built lazily by one thread is seen fully built by the
+ * others.
+ */
+public class ExGridOOState extends PersistentOOState {
+
+	protected volatile LocationIndex index;
+	protected boolean sharedIndex;
+
+
+	public ExGridOOState() {
+	}
+
+	public ExGridOOState(OOState s) {
+		super(s);
+		if(s instanceof ExGridOOState){
+			ExGridOOState es = (ExGridOOState)s;
+			LocationIndex index = es.index;
+			if(index != null){
+				this.index = index;
+				this.sharedIndex = true;
+				es.sharedIndex = true;
+			}
+		}
+	}
+
+	public ExGridOOState(ObjectInstance... objects) {
+		super(objects);
+	}
+
+	/**
+	 * Returns the index of this state's locations, building it if needed. The index must not be modified.
+	 * @return the location index
+	 */
+	public LocationIndex locationIndex(){
+		LocationIndex index = this.index;
+		if(index == null){
+			index = LocationIndex.of(this.locations());
+			this.index = index;
+			this.sharedIndex = false;
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the agent, the first object of the agent class.
+	 * @return the agent
+	 */
+	public ExGridAgent agent(){
+		List<ObjectInstance> agents = this.objectsOfClass(CLASS_AGENT);
+		return agents.isEmpty() ? null : (ExGridAgent)agents.get(0);
+	}
+
+	@SuppressWarnings("unchecked")
+	public List<EXGridLocation> locations(){
+		return (List<EXGridLocation>)(List<?>)this.objectsOfClass(CLASS_LOCATION);
+	}
+
+	@Override
+	public ExGridOOState copy() {
+		return new ExGridOOState(this);
+	}
+
+	@Override
+	public MutableOOState addObject(ObjectInstance o) {
+		super.addObject(o);
+		if(this.index != null && o instanceof EXGridLocation){
+			this.ownIndex().add((EXGridLocation)o);
+		}
+		return this;
+	}
+
+	@Override
+	public MutableOOState removeObject(String oname) {
+		ObjectInstance o = this.object(oname);
+		super.removeObject(oname);
+		if(this.index != null && o instanceof EXGridLocation){
+			this.ownIndex().remove((EXGridLocation)o);
+		}
+		return this;
+	}
+
+	@Override
+	public MutableOOState renameObject(String objectName, String newName) {
+		super.renameObject(objectName, newName);
+		if(this.object(newName) instanceof EXGridLocation){
+			this.index = null;
+		}
+		return this;
+	}
+
+	@Override
+	public ObjectInstance touch(String oname) {
+		if(this.object(oname) instanceof EXGridLocation){
+			this.index = null;
+		}
+		return super.touch(oname);
+	}
+
+	protected LocationIndex ownIndex(){
+		if(this.sharedIndex){
+			this.index = this.index.copy();
+			this.sharedIndex = false;
+		}
+		return this.index;
+	}
+
+}
@@ -20,6 +20,8 @@ import burlap.mdp.singleagent.model.statemodel.FullStateModel;
 import burlap.mdp.singleagent.oo.OOSADomain;
 import burlap.shell.visual.VisualExplorer;
 import burlap.visualizer.*;
+import edu.brown.cs.burlap.tutorials.domain.simple.CachedGridRenderLayer;
+import edu.brown.cs.burlap.tutorials.domain.simple.WallGrid;
 
 import java.awt.*;
 import java.awt.geom.Ellipse2D;
@@ -86,7 +88,7 @@ public class ExampleOOGridWorld implements DomainGenerator{
 
 		OOGridWorldStateModel smodel = new OOGridWorldStateModel();
 		RewardFunction rf = new SingleGoalPFRF(domain.propFunction(PF_AT), 100, -1);
-		TerminalFunction tf = new SinglePFTF(domain.propFunction(PF_AT));
+		TerminalFunction tf = new SomeGroundingTF(domain.propFunction(PF_AT));
 
 		domain.setModel(new FactoredModel(smodel, rf, tf));
 
@@ -113,7 +115,7 @@ public class ExampleOOGridWorld implements DomainGenerator{
 		public List<StateTransitionProb> stateTransitions(State s, Action a) {
 
 			//get agent current position
-			GenericOOState gs = (GenericOOState)s;
+			OOState gs = (OOState)s;
 			ExGridAgent agent = (ExGridAgent)gs.object(CLASS_AGENT);
 
 			int curX = agent.x;
@@ -128,10 +130,8 @@ public class ExampleOOGridWorld implements DomainGenerator{
 				int [] newPos = this.moveResult(curX, curY, i);
 				if(newPos[0] != curX || newPos[1] != curY){
 					//new possible outcome
-					GenericOOState ns = gs.copy();
-					ExGridAgent nagent = (ExGridAgent)ns.touch(CLASS_AGENT);
-					nagent.x = newPos[0];
-					nagent.y = newPos[1];
+					State ns = gs.copy();
+					this.moveAgent(ns, newPos[0], newPos[1]);
 
 					//create transition probability object and add to our list of outcomes
 					tps.add(new StateTransitionProb(ns, this.transitionProbs[adir][i]));
@@ -159,8 +159,7 @@ public class ExampleOOGridWorld implements DomainGenerator{
 		public State sample(State s, Action a) {
 
 			s = s.copy();
-			GenericOOState gs = (GenericOOState)s;
-			ExGridAgent agent = (ExGridAgent)gs.touch(CLASS_AGENT);
+			ExGridAgent agent = (ExGridAgent)((OOState)s).object(CLASS_AGENT);
 			int curX = agent.x;
 			int curY = agent.y;
 
@@ -182,11 +181,33 @@ public class ExampleOOGridWorld implements DomainGenerator{
 			int [] newPos = this.moveResult(curX, curY, dir);
 
 			//set the new position
-			agent.x = newPos[0];
-			agent.y = newPos[1];
+			this.moveAgent(s, newPos[0], newPos[1]);
 
 			//return the state we just modified
-			return gs;
+			return s;
+		}
+
+		/**
+		 * Moves the agent of a state. A {@link PersistentOOState} only copies the agent and the path to it, and a
+		 * {@link ColumnarOOState} only its agent column, so the locations stay shared with the state it was copied from.
+		 * @param s the state
+		 * @param x the new x position
+		 * @param y the new y position
+		 */
+		protected void moveAgent(State s, int x, int y){
+			if(s instanceof ColumnarOOState){
+				((ColumnarOOState)s).setAgentPosition(x, y);
+				return;
+			}
+			ExGridAgent agent;
+			if(s instanceof PersistentOOState){
+				agent = (ExGridAgent)((PersistentOOState)s).touch(CLASS_AGENT);
+			}
+			else{
+				agent = (ExGridAgent)((GenericOOState)s).touch(CLASS_AGENT);
+			}
+			agent.x = x;
+			agent.y = y;
 		}
 
 		protected int actionDir(Action a){
@@ -246,7 +267,7 @@ public class ExampleOOGridWorld implements DomainGenerator{
 
 
 	public Visualizer getVisualizer(){
-		return new Visualizer(this.getStateRenderLayer());
+		return new Visualizer(this.getCachedStateRenderLayer());
 	}
 
 	public StateRenderLayer getStateRenderLayer(){
@@ -261,6 +282,29 @@ public class ExampleOOGridWorld implements DomainGenerator{
 		return rl;
 	}
 
+	/**
+	 * Returns a render layer that caches the walls in image tiles and only redraws the cells of the agent and
+	 * locations that changed, which keeps large maps responsive in a visualizer.
+	 * @return the render layer
+	 */
+	public CachedGridRenderLayer getCachedStateRenderLayer(){
+		CachedGridRenderLayer rl = new CachedGridRenderLayer(WallGrid.fromArray(this.map), new CachedGridRenderLayer.CellLocator() {
+			@Override
+			public void addCells(State s, CachedGridRenderLayer.Cells cells) {
+				for(ObjectInstance ob : ((OOState)s).objects()){
+					cells.add((Integer)ob.get(VAR_X), (Integer)ob.get(VAR_Y));
+				}
+			}
+		});
+		OOStatePainter ooStatePainter = new OOStatePainter();
+		ooStatePainter.addObjectClassPainter(CLASS_LOCATION, new LocationPainter());
+		ooStatePainter.addObjectClassPainter(CLASS_AGENT, new AgentPainter());
+		rl.addStatePainter(ooStatePainter);
+
+
+		return rl;
+	}
+
 
 	protected class AtLocation extends PropositionalFunction {
 
@@ -273,6 +317,13 @@ public class ExampleOOGridWorld implements DomainGenerator{
 			ObjectInstance agent = s.object(params[0]);
 			ObjectInstance location = s.object(params[1]);
 
+			//read the fields directly when we can, rather than through boxed gets
+			if(agent instanceof ExGridAgent && location instanceof ExGridAgent){
+				ExGridAgent a = (ExGridAgent)agent;
+				ExGridAgent l = (ExGridAgent)location;
+				return a.x == l.x && a.y == l.y;
+			}
+
 			int ax = (Integer)agent.get(VAR_X);
 			int ay = (Integer)agent.get(VAR_Y);
 
@@ -283,6 +334,46 @@ public class ExampleOOGridWorld implements DomainGenerator{
 
 		}
 
+		@Override
+		public boolean someGroundingIsTrue(OOState s) {
+			if(s instanceof ColumnarOOState){
+				return ((ColumnarOOState)s).someAgentAtLocation();
+			}
+			if(!(s instanceof ExGridOOState)){
+				return super.someGroundingIsTrue(s);
+			}
+
+			//look up each agent's cell in the location index instead of checking every agent x location grounding
+			LocationIndex index = ((ExGridOOState)s).locationIndex();
+			for(ObjectInstance ob : s.objectsOfClass(CLASS_AGENT)){
+				ExGridAgent agent = (ExGridAgent)ob;
+				if(index.contains(agent.x, agent.y)){
+					return true;
+				}
+			}
+			return false;
+		}
+
+	}
+
+	/**
+	 * A terminal function for states where some grounding of a propositional function is true. Unlike
+	 * {@link SinglePFTF}, which evaluates every grounding, it asks the function itself, so that {@link AtLocation}
+	 * can answer from the location index.
+	 */
+	public static class SomeGroundingTF implements TerminalFunction {
+
+		protected PropositionalFunction pf;
+
+		public SomeGroundingTF(PropositionalFunction pf) {
+			this.pf = pf;
+		}
+
+		@Override
+		public boolean isTerminal(State s) {
+			return this.pf.someGroundingIsTrue((OOState)s);
+		}
+
 	}
 
 
@@ -303,10 +394,21 @@ public class ExampleOOGridWorld implements DomainGenerator{
 			float width = cWidth / fWidth;
 			float height = cHeight / fHeight;
 
+			//only the columns and rows inside the clip can show up, so skip the rest
+			int x0 = 0, x1 = ExampleOOGridWorld.this.map.length, y0 = 0, y1 = ExampleOOGridWorld.this.map[0].length;
+			Rectangle clip = g2.getClipBounds();
+			if(clip != null){
+				x0 = Math.max(x0, (int)(clip.x / width));
+				x1 = Math.min(x1, (int)Math.ceil((clip.x + clip.width) / width));
+				y0 = Math.max(y0, (int)((cHeight - clip.y - clip.height) / height));
+				y1 = Math.min(y1, (int)Math.ceil((cHeight - clip.y) / height));
+			}
+
 			//pass through each cell of our map and if it's a wall, paint a black rectangle on our
 			//cavas of dimension widthxheight
-			for(int i = 0; i < ExampleOOGridWorld.this.map.length; i++){
-				for(int j = 0; j < ExampleOOGridWorld.this.map[0].length; j++){
+			Rectangle2D.Float rect = new Rectangle2D.Float();
+			for(int i = x0; i < x1; i++){
+				for(int j = y0; j < y1; j++){
 
 					//is there a wall here?
 					if(ExampleOOGridWorld.this.map[i][j] == 1){
@@ -320,7 +422,8 @@ public class ExampleOOGridWorld implements DomainGenerator{
 						float ry = cHeight - height - j*height;
 
 						//paint the rectangle
-						g2.fill(new Rectangle2D.Float(rx, ry, width, height));
+						rect.setRect(rx, ry, width, height);
+						g2.fill(rect);
 
 					}
 
@@ -417,7 +520,7 @@ public class ExampleOOGridWorld implements DomainGenerator{
 
 		ExampleOOGridWorld gen = new ExampleOOGridWorld();
 		OOSADomain domain = gen.generateDomain();
-		State initialState = new GenericOOState(new ExGridAgent(0, 0), new EXGridLocation(10, 10, "loc0"));
+		State initialState = new ExGridOOState(new ExGridAgent(0, 0), new EXGridLocation(10, 10, "loc0"));
 		SimulatedEnvironment env = new SimulatedEnvironment(domain, initialState);
 
 		Visualizer v = gen.getVisualizer();
@@ -0,0 +1,220 @@
+package edu.brown.cs.burlap.tutorials.domain.oo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An index from grid cells to the {@link EXGridLocation} objects at them, so that the locations at a cell are found
+ * in O(1) rather than by checking every location. Cells are packed into a long key (x in the high 32 bits, y in the
+ * low) in an open addressing hash table whose entries head a chain of the locations at that cell.
+ * <p>
+ * Indices are mutable; {@link ExGridOOState} shares one index between a state and its copies and copies it before
+ * changing it.
+ */
+public class LocationIndex {
+
+	protected long [] keys;
+	protected int [] heads;
+	protected int numKeys;
+
+	protected EXGridLocation [] entries;
+	protected int [] next;
+	protected int numEntries;
+	protected int freeEntry = -1;
+	protected int size;
+
+
+	public LocationIndex() {
+		this(16);
+	}
+
+	/**
+	 * Initializes with room for some locations before resizing.
+	 * @param expectedLocations the expected number of locations
+	 */
+	public LocationIndex(int expectedLocations) {
+		int capacity = Integer.highestOneBit(Math.max(expectedLocations, 8) * 2 - 1) << 1;
+		this.keys = new long[capacity];
+		this.heads = new int[capacity];
+		Arrays.fill(this.heads, -2);
+		this.entries = new EXGridLocation[Math.max(expectedLocations, 8)];
+		this.next = new int[this.entries.length];
+	}
+
+	/**
+	 * Builds an index of the given locations.
+	 * @param locations the locations
+	 * @return the index
+	 */
+	public static LocationIndex of(List<? extends EXGridLocation> locations){
+		LocationIndex index = new LocationIndex(locations.size());
+		for(EXGridLocation loc : locations){
+			index.add(loc);
+		}
+		return index;
+	}
+
+	public int size(){
+		return this.size;
+	}
+
+	public void add(EXGridLocation loc){
+		int slot = this.slot(loc.x, loc.y, true);
+		int e = this.newEntry();
+		this.entries[e] = loc;
+		this.next[e] = this.heads[slot];
+		this.heads[slot] = e;
+		this.size++;
+	}
+
+	/**
+	 * Removes a location, found by identity at its cell.
+	 * @param loc the location
+	 * @return true if the location was in the index
+	 */
+	public boolean remove(EXGridLocation loc){
+		int slot = this.slot(loc.x, loc.y, false);
+		if(slot == -1){
+			return false;
+		}
+		int prev = -1;
+		for(int e = this.heads[slot]; e >= 0; e = this.next[e]){
+			if(this.entries[e] == loc){
+				if(prev == -1){
+					this.heads[slot] = this.next[e];
+				}
+				else{
+					this.next[prev] = this.next[e];
+				}
+				this.entries[e] = null;
+				this.next[e] = this.freeEntry;
+				this.freeEntry = e;
+				this.size--;
+				return true;
+			}
+			prev = e;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether any location is at a cell.
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @return whether a location is at the cell
+	 */
+	public boolean contains(int x, int y){
+		int slot = this.slot(x, y, false);
+		return slot != -1 && this.heads[slot] >= 0;
+	}
+
+	/**
+	 * Returns a location at a cell, or null if there is none.
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @return a location at the cell, or null
+	 */
+	public EXGridLocation first(int x, int y){
+		int slot = this.slot(x, y, false);
+		return slot == -1 || this.heads[slot] < 0 ? null : this.entries[this.heads[slot]];
+	}
+
+	/**
+	 * Returns the locations at a cell.
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @return the locations at the cell
+	 */
+	public List<EXGridLocation> locationsAt(int x, int y){
+		int slot = this.slot(x, y, false);
+		if(slot == -1 || this.heads[slot] < 0){
+			return Collections.emptyList();
+		}
+		List<EXGridLocation> locs = new ArrayList<EXGridLocation>(2);
+		for(int e = this.heads[slot]; e >= 0; e = this.next[e]){
+			locs.add(this.entries[e]);
+		}
+		return locs;
+	}
+
+	public LocationIndex copy(){
+		LocationIndex c = new LocationIndex(0);
+		c.keys = this.keys.clone();
+		c.heads = this.heads.clone();
+		c.numKeys = this.numKeys;
+		c.entries = this.entries.clone();
+		c.next = this.next.clone();
+		c.numEntries = this.numEntries;
+		c.freeEntry = this.freeEntry;
+		c.size = this.size;
+		return c;
+	}
+
+	/**
+	 * Returns the table slot of a cell, or -1 if the cell has never had a location and insert is false. A slot whose
+	 * head is -2 is empty; a cell whose last location was removed keeps its slot with a head of -1.
+	 */
+	protected int slot(int x, int y, boolean insert){
+		long key = ((long)x << 32) | (y & 0xFFFFFFFFL);
+		int mask = this.keys.length - 1;
+		int slot = (int)((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+		while(this.heads[slot] != -2){
+			if(this.keys[slot] == key){
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		if(!insert){
+			return -1;
+		}
+		if((this.numKeys + 1) * 2 > this.keys.length){
+			this.rehash();
+			return this.slot(x, y, true);
+		}
+		this.keys[slot] = key;
+		this.heads[slot] = -1;
+		this.numKeys++;
+		return slot;
+	}
+
+	protected int newEntry(){
+		if(this.freeEntry != -1){
+			int e = this.freeEntry;
+			this.freeEntry = this.next[e];
+			return e;
+		}
+		if(this.numEntries == this.entries.length){
+			this.entries = Arrays.copyOf(this.entries, this.numEntries * 2);
+			this.next = Arrays.copyOf(this.next, this.numEntries * 2);
+		}
+		return this.numEntries++;
+	}
+
+	/**
+	 * Doubles the table, dropping cells that no longer have locations.
+	 */
+	protected void rehash(){
+		long [] oldKeys = this.keys;
+		int [] oldHeads = this.heads;
+		this.keys = new long[oldKeys.length * 2];
+		this.heads = new int[oldKeys.length * 2];
+		Arrays.fill(this.heads, -2);
+		this.numKeys = 0;
+		int mask = this.keys.length - 1;
+		for(int i = 0; i < oldKeys.length; i++){
+			if(oldHeads[i] < 0){
+				continue;
+			}
+			int slot = (int)((oldKeys[i] * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+			while(this.heads[slot] != -2){
+				slot = (slot + 1) & mask;
+			}
+			this.keys[slot] = oldKeys[i];
+			this.heads[slot] = oldHeads[i];
+			this.numKeys++;
+		}
+	}
+
+}
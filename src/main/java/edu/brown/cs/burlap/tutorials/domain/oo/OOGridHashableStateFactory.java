@@ -0,0 +1,33 @@
+package edu.brown.cs.burlap.tutorials.domain.oo;
+
+import burlap.mdp.core.state.State;
+import burlap.statehashing.HashableState;
+import burlap.statehashing.HashableStateFactory;
+import burlap.statehashing.simple.SimpleHashableStateFactory;
+
+/**
+ * A {@link HashableStateFactory} for {@link ExampleOOGridWorld} states. A {@link PersistentOOState}, including an
+ * {@link ExGridOOState}, is its own hashable state with cached object hashes, so hashing one returns it unchanged
+ * and a planner's stored states share their unchanged objects. Persistent states are compared by object name. A
+ * {@link ColumnarOOState} is likewise its own hashable state, compared independently of object names. Other states are
+ * hashed by a {@link SimpleHashableStateFactory}.
+ * <p>
+ * Because the state itself is the key, a state must not be modified after it has been hashed; BURLAP's models
+ * return new states from sampling and transitions, so this only matters for code that reuses states.
+ */
+public class OOGridHashableStateFactory implements HashableStateFactory {
+
+	protected HashableStateFactory fallback = new SimpleHashableStateFactory();
+
+	@Override
+	public HashableState hashState(State s) {
+		if(s instanceof PersistentOOState){
+			return (PersistentOOState)s;
+		}
+		if(s instanceof ColumnarOOState){
+			return (ColumnarOOState)s;
+		}
+		return this.fallback.hashState(s);
+	}
+
+}
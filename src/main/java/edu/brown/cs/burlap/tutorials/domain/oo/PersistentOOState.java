@@ -0,0 +1,508 @@
+package edu.brown.cs.burlap.tutorials.domain.oo;
+
+import burlap.mdp.core.oo.state.MutableOOState;
+import burlap.mdp.core.oo.state.OOState;
+import burlap.mdp.core.oo.state.OOStateUtilities;
+import burlap.mdp.core.oo.state.OOVariableKey;
+import burlap.mdp.core.oo.state.ObjectInstance;
+import burlap.mdp.core.oo.state.exceptions.UnknownObjectException;
+import burlap.mdp.core.state.MutableState;
+import burlap.mdp.core.state.State;
+import burlap.statehashing.HashableState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A persistent, copy-on-write {@link MutableOOState}. The objects are kept in a 32-way trie indexed by object
+ * ordinal, and copying a state shares the whole trie, so a copy takes O(1) time and memory. Touching an object, which
+ * copies it so that it can be modified, copies only the O(log32 n) trie nodes on the path to it, so a state that
+ * differs from its parent in k objects costs O(k log n) memory rather than O(n). States that hold thousands of
+ * objects that never change, like the locations of {@link ExampleOOGridWorld}, therefore share them all.
+ * <p>
+ * The state is also its own {@link HashableState}, hashed and compared by object name, so that equal states must
+ * give their objects the same names. Every object's hash is cached with it in the trie and the state's hash is the
+ * sum of its objects' hashes, so hashing a state derived from a hashed parent only hashes the objects it touched.
+ * Equality skips trie nodes that the two states share. As with any cached hash, objects must not be modified once
+ * the state holding them has been hashed or copied; touch the object again in a new copy instead.
+ * <p>
+ * A state that is no longer modified may be hashed and compared from several threads at once, as when it is a key of
+ * a concurrent map: the object and state hashes are each cached in a single int field that is 0 until computed, so
+ * a thread either sees the complete hash or computes it again. Modifying a state is not thread-safe.
+ * <p>
+ * Adding, removing and renaming objects copy the name-to-ordinal layout, which is shared between copies, and so cost
+ * O(n); they are expected to be rare next to touching objects.
+ */
+public class PersistentOOState implements MutableOOState, HashableState {
+
+	protected static final int BITS = 5;
+	protected static final int WIDTH = 1 << BITS;
+	protected static final int MASK = WIDTH - 1;
+
+	protected static final int [] NO_DIRTY = new int[0];
+
+	/**
+	 * An object and its cached hash. Entries are never modified once their hash is computed, so they are shared
+	 * between states. The hash is computed lazily, because a touched object is modified after its entry is made, and
+	 * is cached in one int field that is 0 until computed, so threads racing to compute it store the same value.
+	 */
+	protected static final class Entry {
+
+		final ObjectInstance ob;
+		int hash;
+
+		Entry(ObjectInstance ob) {
+			this.ob = ob;
+		}
+
+		int hash(){
+			int h = this.hash;
+			if(h == 0){
+				h = objectHash(this.ob);
+				this.hash = h;
+			}
+			return h;
+		}
+
+	}
+
+	/**
+	 * The ordinal of each object name and the ordinals of the objects of each class, shared between copies.
+	 */
+	protected static class Layout {
+
+		Map<String, Integer> ordinals = new HashMap<String, Integer>();
+		Map<String, int []> classOrdinals = new LinkedHashMap<String, int[]>();
+
+		Layout copy(){
+			Layout c = new Layout();
+			c.ordinals.putAll(this.ordinals);
+			c.classOrdinals.putAll(this.classOrdinals);
+			return c;
+		}
+
+	}
+
+
+	protected Object [] root = new Object[WIDTH];
+	protected int shift;
+	protected int size;
+
+	protected Layout layout = new Layout();
+	protected boolean sharedLayout;
+
+	/**
+	 * The sum of the hashes of all objects except the dirty ones, which were touched since the last hash. These are
+	 * only written by modifications, never by {@link #hashCode()}.
+	 */
+	protected int hashSum;
+	protected boolean hashValid;
+	protected int [] dirty = NO_DIRTY;
+	protected int numDirty;
+
+	/**
+	 * The cached hash of the whole state, or 0 if it has not been computed since the state was last modified.
+	 */
+	protected int hash;
+
+
+	public PersistentOOState() {
+	}
+
+	/**
+	 * Copies a state. A persistent state is copied by sharing its trie and layout; any other state's objects are
+	 * added one by one.
+	 * @param s the state to copy
+	 */
+	public PersistentOOState(OOState s) {
+		if(s instanceof PersistentOOState){
+			PersistentOOState ps = (PersistentOOState)s;
+			this.root = ps.root;
+			this.shift = ps.shift;
+			this.size = ps.size;
+			this.layout = ps.layout;
+			this.sharedLayout = true;
+			ps.sharedLayout = true;
+			int h = ps.hash;
+			if(h != 0){
+				//start from the parent's complete hash, with no dirty objects
+				this.hashSum = h;
+				this.hashValid = true;
+				this.hash = h;
+			}
+			else{
+				this.hashSum = ps.hashSum;
+				this.hashValid = ps.hashValid;
+				this.dirty = ps.numDirty > 0 ? Arrays.copyOf(ps.dirty, ps.numDirty) : NO_DIRTY;
+				this.numDirty = ps.numDirty;
+			}
+		}
+		else{
+			for(ObjectInstance ob : s.objects()){
+				this.addObject(ob);
+			}
+		}
+	}
+
+	public PersistentOOState(ObjectInstance... objects) {
+		for(ObjectInstance ob : objects){
+			this.addObject(ob);
+		}
+	}
+
+	@Override
+	public PersistentOOState copy() {
+		return new PersistentOOState(this);
+	}
+
+	/**
+	 * Replaces an object with a copy that may be modified, and returns the copy. Only the trie path to the object is
+	 * copied.
+	 * @param oname the name of the object
+	 * @return the modifiable copy, or null if there is no object with the name
+	 */
+	public ObjectInstance touch(String oname){
+		Integer i = this.layout.ordinals.get(oname);
+		if(i == null){
+			return null;
+		}
+		Entry old = this.entry(i);
+		ObjectInstance c = (ObjectInstance)old.ob.copy();
+
+		//fold the dirty objects into the hash sum if the state has been hashed since they were touched
+		int h = this.hash;
+		if(h != 0){
+			this.hashSum = h;
+			this.hashValid = true;
+			this.numDirty = 0;
+			this.hash = 0;
+		}
+
+		//take the old object out of the hash sum; the new one is added back when the state is next hashed
+		if(this.hashValid && !this.isDirty(i)){
+			this.hashSum -= old.hash();
+			if(this.numDirty == this.dirty.length){
+				this.dirty = Arrays.copyOf(this.dirty, Math.max(4, this.numDirty * 2));
+			}
+			this.dirty[this.numDirty++] = i;
+		}
+		this.setEntry(i, new Entry(c));
+		return c;
+	}
+
+	@Override
+	public int numObjects() {
+		return this.size;
+	}
+
+	@Override
+	public ObjectInstance object(String oname) {
+		Integer i = this.layout.ordinals.get(oname);
+		return i == null ? null : this.entry(i).ob;
+	}
+
+	@Override
+	public List<ObjectInstance> objects() {
+		List<ObjectInstance> obs = new ArrayList<ObjectInstance>(this.size);
+		for(int i = 0; i < this.size; i++){
+			obs.add(this.entry(i).ob);
+		}
+		return obs;
+	}
+
+	@Override
+	public List<ObjectInstance> objectsOfClass(String oclass) {
+		int [] ords = this.layout.classOrdinals.get(oclass);
+		if(ords == null){
+			return new ArrayList<ObjectInstance>(0);
+		}
+		List<ObjectInstance> obs = new ArrayList<ObjectInstance>(ords.length);
+		for(int i : ords){
+			obs.add(this.entry(i).ob);
+		}
+		return obs;
+	}
+
+	@Override
+	public MutableOOState addObject(ObjectInstance o) {
+		if(this.layout.ordinals.containsKey(o.name())){
+			throw new RuntimeException("Could not add object " + o.name() + " because an object with that name already exists.");
+		}
+		Layout layout = this.ownLayout();
+		int i = this.size;
+		layout.ordinals.put(o.name(), i);
+		int [] ords = layout.classOrdinals.get(o.className());
+		ords = ords == null ? new int[1] : Arrays.copyOf(ords, ords.length + 1);
+		ords[ords.length - 1] = i;
+		layout.classOrdinals.put(o.className(), ords);
+
+		if(this.size == 1 << (this.shift + BITS)){
+			Object [] newRoot = new Object[WIDTH];
+			newRoot[0] = this.root;
+			this.root = newRoot;
+			this.shift += BITS;
+		}
+		this.setEntry(i, new Entry(o));
+		this.size++;
+		this.hashValid = false;
+		this.hash = 0;
+		return this;
+	}
+
+	@Override
+	public MutableOOState removeObject(String oname) {
+		Integer i = this.layout.ordinals.get(oname);
+		if(i == null){
+			return this;
+		}
+		Layout layout = this.ownLayout();
+		ObjectInstance removed = this.entry(i).ob;
+		layout.ordinals.remove(oname);
+		this.removeOrdinal(layout, removed.className(), i);
+
+		//move the last object into the removed object's place so ordinals stay dense
+		int last = this.size - 1;
+		if(i != last){
+			Entry moved = this.entry(last);
+			layout.ordinals.put(moved.ob.name(), i);
+			int [] ords = layout.classOrdinals.get(moved.ob.className()).clone();
+			for(int k = 0; k < ords.length; k++){
+				if(ords[k] == last){
+					ords[k] = i;
+				}
+			}
+			layout.classOrdinals.put(moved.ob.className(), ords);
+			this.setEntry(i, moved);
+		}
+		this.setEntry(last, null);
+		this.size--;
+		this.hashValid = false;
+		this.hash = 0;
+		return this;
+	}
+
+	@Override
+	public MutableOOState renameObject(String objectName, String newName) {
+		Integer i = this.layout.ordinals.get(objectName);
+		if(i == null){
+			throw new UnknownObjectException(objectName);
+		}
+		Layout layout = this.ownLayout();
+		layout.ordinals.remove(objectName);
+		layout.ordinals.put(newName, i);
+		this.setEntry(i, new Entry(this.entry(i).ob.copyWithName(newName)));
+		this.hashValid = false;
+		this.hash = 0;
+		return this;
+	}
+
+	@Override
+	public MutableState set(Object variableKey, Object value) {
+		OOVariableKey key = OOStateUtilities.generateKey(variableKey);
+		ObjectInstance ob = this.touch(key.obName);
+		if(ob == null){
+			throw new UnknownObjectException(key.obName);
+		}
+		if(!(ob instanceof MutableState)){
+			throw new RuntimeException("Cannot set value for object " + ob.name() + " because it does not implement MutableState");
+		}
+		((MutableState)ob).set(key.obVarKey, value);
+		return this;
+	}
+
+	@Override
+	public List<Object> variableKeys() {
+		return OOStateUtilities.flatStateKeys(this);
+	}
+
+	@Override
+	public Object get(Object variableKey) {
+		return OOStateUtilities.get(this, variableKey);
+	}
+
+	@Override
+	public State s() {
+		return this;
+	}
+
+	@Override
+	public int hashCode() {
+		int h = this.hash;
+		if(h == 0){
+			//only read the incremental hash fields, so that threads hashing the same state cannot corrupt them
+			h = 0;
+			if(!this.hashValid){
+				for(int i = 0; i < this.size; i++){
+					h += this.entry(i).hash();
+				}
+			}
+			else{
+				h = this.hashSum;
+				for(int k = 0; k < this.numDirty; k++){
+					h += this.entry(this.dirty[k]).hash();
+				}
+			}
+			this.hash = h;
+		}
+		return h;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj){
+			return true;
+		}
+		if(!(obj instanceof PersistentOOState)){
+			return false;
+		}
+		PersistentOOState o = (PersistentOOState)obj;
+		if(this.size != o.size || this.hashCode() != o.hashCode()){
+			return false;
+		}
+
+		//with the same layout, objects are at the same ordinals, so compare the tries and skip shared nodes
+		if(this.layout == o.layout || (this.shift == o.shift && this.layout.ordinals.equals(o.layout.ordinals))){
+			return nodesEqual(this.root, o.root, this.shift);
+		}
+		for(Map.Entry<String, Integer> e : this.layout.ordinals.entrySet()){
+			Integer j = o.layout.ordinals.get(e.getKey());
+			if(j == null || !entriesEqual(this.entry(e.getValue()), o.entry(j))){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return OOStateUtilities.ooStateToString(this);
+	}
+
+	/**
+	 * Returns the hash of an object from its name, class and variable values.
+	 * @param ob the object
+	 * @return the hash
+	 */
+	public static int objectHash(ObjectInstance ob){
+		int h = ob.name().hashCode() * 31 + ob.className().hashCode();
+		for(Object key : ob.variableKeys()){
+			Object v = ob.get(key);
+			h = h * 31 + (v == null ? 0 : v.hashCode());
+		}
+		//spread the bits so that summing hashes of similar objects doesn't cancel out
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	protected Entry entry(int i){
+		Object [] node = this.root;
+		for(int level = this.shift; level > 0; level -= BITS){
+			node = (Object[])node[(i >>> level) & MASK];
+		}
+		return (Entry)node[i & MASK];
+	}
+
+	protected void setEntry(int i, Entry e){
+		this.root = assoc(this.root, this.shift, i, e);
+	}
+
+	/**
+	 * Returns a copy of the node with the entry at ordinal i replaced, copying only the nodes on the path to it.
+	 */
+	protected static Object [] assoc(Object [] node, int level, int i, Entry e){
+		Object [] c = node == null ? new Object[WIDTH] : node.clone();
+		if(level == 0){
+			c[i & MASK] = e;
+		}
+		else{
+			int k = (i >>> level) & MASK;
+			c[k] = assoc((Object[])c[k], level - BITS, i, e);
+		}
+		return c;
+	}
+
+	protected static boolean nodesEqual(Object [] a, Object [] b, int level){
+		if(a == b){
+			return true;
+		}
+		if(a == null || b == null){
+			return false;
+		}
+		for(int k = 0; k < WIDTH; k++){
+			if(level == 0){
+				if(!entriesEqual((Entry)a[k], (Entry)b[k])){
+					return false;
+				}
+			}
+			else if(!nodesEqual((Object[])a[k], (Object[])b[k], level - BITS)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	protected static boolean entriesEqual(Entry a, Entry b){
+		if(a == b || (a != null && b != null && a.ob == b.ob)){
+			return true;
+		}
+		if(a == null || b == null || a.hash() != b.hash()){
+			return false;
+		}
+		ObjectInstance oa = a.ob;
+		ObjectInstance ob = b.ob;
+		if(!oa.name().equals(ob.name()) || !oa.className().equals(ob.className())){
+			return false;
+		}
+		List<Object> keys = oa.variableKeys();
+		if(!keys.equals(ob.variableKeys())){
+			return false;
+		}
+		for(Object key : keys){
+			Object va = oa.get(key);
+			Object vb = ob.get(key);
+			if(va == null ? vb != null : !va.equals(vb)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	protected boolean isDirty(int i){
+		for(int k = 0; k < this.numDirty; k++){
+			if(this.dirty[k] == i){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	protected Layout ownLayout(){
+		if(this.sharedLayout){
+			this.layout = this.layout.copy();
+			this.sharedLayout = false;
+		}
+		return this.layout;
+	}
+
+	protected void removeOrdinal(Layout layout, String className, int i){
+		int [] ords = layout.classOrdinals.get(className);
+		int [] c = new int[ords.length - 1];
+		int n = 0;
+		for(int o : ords){
+			if(o != i){
+				c[n++] = o;
+			}
+		}
+		if(c.length == 0){
+			layout.classOrdinals.remove(className);
+		}
+		else{
+			layout.classOrdinals.put(className, c);
+		}
+	}
+
+}
@@ -0,0 +1,362 @@
+package edu.brown.cs.burlap.tutorials.domain.simple;
+
+import burlap.mdp.core.state.NullState;
+import burlap.mdp.core.state.State;
+import burlap.visualizer.StatePainter;
+import burlap.visualizer.StateRenderLayer;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link StateRenderLayer} for grid worlds whose walls never change. The walls are rendered once into cached
+ * image tiles of {@link #TILE_CELLS} x {@link #TILE_CELLS} cells, and only the tiles that intersect the viewport are
+ * rendered or drawn. The layer keeps the last frame it drew, and when the state changes it only restores the
+ * background of, and repaints the state painters inside, the cells the {@link CellLocator} reports as occupied in
+ * the previous or the new state. Drawing a frame therefore costs one image copy plus work proportional to the number
+ * of changed cells, rather than to the number of walls.
+ * <p>
+ * The state painters added with {@link #addStatePainter(StatePainter)} are ordinary painters that paint the whole
+ * grid onto the canvas they are given; the layer transforms and clips the graphics so that they paint the viewport.
+ * The viewport defaults to the whole grid and can be restricted with {@link #setViewport(int, int, int, int)} or
+ * {@link #centerViewport(int, int)} to watch part of a large map.
+ */
+public class CachedGridRenderLayer extends StateRenderLayer {
+
+	/**
+	 * The width and height, in cells, of a cached wall tile.
+	 */
+	public static final int TILE_CELLS = 64;
+
+	/**
+	 * Reports the cells the state painters draw in for a state, so that only those cells need to be redrawn when
+	 * the state changes.
+	 */
+	public interface CellLocator {
+		/**
+		 * Adds every cell the state painters may draw in when painting the state.
+		 * @param s the state
+		 * @param cells the list to add the cells to
+		 */
+		void addCells(State s, Cells cells);
+	}
+
+	/**
+	 * A reusable list of cells.
+	 */
+	public static class Cells {
+
+		protected int [] xs = new int[8];
+		protected int [] ys = new int[8];
+		protected int size;
+
+		public void add(int x, int y){
+			if(this.size == this.xs.length){
+				this.xs = Arrays.copyOf(this.xs, this.size * 2);
+				this.ys = Arrays.copyOf(this.ys, this.size * 2);
+			}
+			this.xs[this.size] = x;
+			this.ys[this.size] = y;
+			this.size++;
+		}
+
+		public int size(){
+			return this.size;
+		}
+
+		public int x(int i){
+			return this.xs[i];
+		}
+
+		public int y(int i){
+			return this.ys[i];
+		}
+
+		public void clear(){
+			this.size = 0;
+		}
+
+	}
+
+
+	protected WallGrid walls;
+	protected CellLocator locator;
+	protected Color wallColor = Color.BLACK;
+	protected Color backgroundColor = Color.WHITE;
+
+	protected int vx;
+	protected int vy;
+	protected int vw;
+	protected int vh;
+
+	/**
+	 * Cached wall tiles at the current cell size, keyed by tile column and row, least recently used first.
+	 */
+	protected Map<Long, BufferedImage> tiles;
+	protected int maxTiles = 256;
+	protected float tileCellWidth;
+	protected float tileCellHeight;
+
+	protected BufferedImage background;
+	protected BufferedImage frame;
+	protected int [] frameViewport = new int[4];
+	protected int offsetX;
+	protected int offsetY;
+	protected boolean frameValid;
+
+	protected Cells drawnCells = new Cells();
+	protected Cells newCells = new Cells();
+	protected List<Rectangle> dirty = new ArrayList<Rectangle>();
+	protected Rectangle2D.Float rect = new Rectangle2D.Float();
+
+
+	/**
+	 * Initializes with the whole grid as the viewport.
+	 * @param walls the walls of the grid
+	 * @param locator reports the cells the state painters draw in
+	 */
+	public CachedGridRenderLayer(WallGrid walls, CellLocator locator) {
+		this.walls = walls;
+		this.locator = locator;
+		this.vw = walls.width();
+		this.vh = walls.height();
+		this.tiles = new LinkedHashMap<Long, BufferedImage>(16, 0.75f, true){
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+				return this.size() > CachedGridRenderLayer.this.maxTiles;
+			}
+		};
+	}
+
+	public void setWallColor(Color wallColor) {
+		this.wallColor = wallColor;
+		this.invalidate();
+	}
+
+	/**
+	 * Sets the color of open cells. This should match the background color of the visualizer.
+	 * @param backgroundColor the color of open cells
+	 */
+	public void setBackgroundColor(Color backgroundColor) {
+		this.backgroundColor = backgroundColor;
+		this.invalidate();
+	}
+
+	/**
+	 * Sets the maximum number of wall tiles kept in the cache.
+	 * @param maxTiles the maximum number of cached tiles
+	 */
+	public void setMaxTiles(int maxTiles) {
+		this.maxTiles = maxTiles;
+	}
+
+	/**
+	 * Restricts rendering to a rectangle of cells, which is clamped to the grid.
+	 * @param x the leftmost cell column
+	 * @param y the bottom cell row
+	 * @param width the number of cell columns
+	 * @param height the number of cell rows
+	 */
+	public void setViewport(int x, int y, int width, int height){
+		this.vw = Math.max(1, Math.min(width, this.walls.width()));
+		this.vh = Math.max(1, Math.min(height, this.walls.height()));
+		this.vx = Math.max(0, Math.min(x, this.walls.width() - this.vw));
+		this.vy = Math.max(0, Math.min(y, this.walls.height() - this.vh));
+	}
+
+	/**
+	 * Moves the viewport, keeping its size, so that it is centered on a cell as far as the grid allows.
+	 * @param x the x coordinate of the cell
+	 * @param y the y coordinate of the cell
+	 */
+	public void centerViewport(int x, int y){
+		this.setViewport(x - this.vw / 2, y - this.vh / 2, this.vw, this.vh);
+	}
+
+	/**
+	 * Drops the cached wall tiles and last frame, e.g., after the walls are modified.
+	 */
+	public void invalidate(){
+		this.tiles.clear();
+		this.frameValid = false;
+	}
+
+	@Override
+	public void render(Graphics2D g2, float width, float height) {
+		if(this.curState == null || this.curState instanceof NullState){
+			return;
+		}
+
+		int iw = (int)Math.ceil(width);
+		int ih = (int)Math.ceil(height);
+		if(iw <= 0 || ih <= 0){
+			return;
+		}
+		float cw = (float)iw / this.vw;
+		float ch = (float)ih / this.vh;
+
+		this.newCells.clear();
+		this.locator.addCells(this.curState, this.newCells);
+
+		//the painters paint the whole grid on a virtual canvas, which is shifted by whole pixels so the viewport lands
+		//on the frame; whole pixel shifts keep the painters and the wall tiles rasterizing cells identically
+		float gridWidth = cw * this.walls.width();
+		float gridHeight = ch * this.walls.height();
+		this.offsetX = Math.round(-this.vx * cw);
+		this.offsetY = Math.round(ih - gridHeight + this.vy * ch);
+
+		Graphics2D fg;
+		if(!this.frameValid || this.frame.getWidth() != iw || this.frame.getHeight() != ih || this.viewportMoved()){
+			this.renderBackground(iw, ih, cw, ch, gridHeight);
+			fg = this.frame.createGraphics();
+			fg.drawImage(this.background, 0, 0, null);
+			fg.translate(this.offsetX, this.offsetY);
+			for(StatePainter sp : this.statePainters){
+				sp.paint(fg, this.curState, gridWidth, gridHeight);
+			}
+		}
+		else{
+			//restore the background of every cell painted last frame or about to be painted, then repaint each of
+			//them with a rectangular clip, which rasterizes exactly as an unclipped paint would
+			fg = this.frame.createGraphics();
+			this.dirty.clear();
+			this.addDirtyRects(this.drawnCells, iw, ih, cw, ch, gridHeight);
+			this.addDirtyRects(this.newCells, iw, ih, cw, ch, gridHeight);
+			for(Rectangle r : this.dirty){
+				fg.drawImage(this.background, r.x, r.y, r.x + r.width, r.y + r.height, r.x, r.y, r.x + r.width, r.y + r.height, null);
+			}
+			fg.translate(this.offsetX, this.offsetY);
+			for(Rectangle r : this.dirty){
+				fg.setClip(r.x - this.offsetX, r.y - this.offsetY, r.width, r.height);
+				for(StatePainter sp : this.statePainters){
+					sp.paint(fg, this.curState, gridWidth, gridHeight);
+				}
+			}
+		}
+		fg.dispose();
+
+		Cells tmp = this.drawnCells;
+		this.drawnCells = this.newCells;
+		this.newCells = tmp;
+
+		g2.drawImage(this.frame, 0, 0, null);
+	}
+
+	protected boolean viewportMoved(){
+		return this.frameViewport[0] != this.vx || this.frameViewport[1] != this.vy
+				|| this.frameViewport[2] != this.vw || this.frameViewport[3] != this.vh;
+	}
+
+	/**
+	 * Renders the background of the viewport from the wall tiles, and resets the frame to it.
+	 */
+	protected void renderBackground(int iw, int ih, float cw, float ch, float gridHeight){
+		if(this.frame == null || this.frame.getWidth() != iw || this.frame.getHeight() != ih){
+			this.frame = new BufferedImage(iw, ih, BufferedImage.TYPE_INT_RGB);
+			this.background = new BufferedImage(iw, ih, BufferedImage.TYPE_INT_RGB);
+		}
+		if(cw != this.tileCellWidth || ch != this.tileCellHeight){
+			this.tiles.clear();
+			this.tileCellWidth = cw;
+			this.tileCellHeight = ch;
+		}
+
+		Graphics2D bg = this.background.createGraphics();
+		bg.setColor(this.backgroundColor);
+		bg.fillRect(0, 0, iw, ih);
+
+		int tx0 = this.vx / TILE_CELLS;
+		int tx1 = (this.vx + this.vw - 1) / TILE_CELLS;
+		int ty0 = this.vy / TILE_CELLS;
+		int ty1 = (this.vy + this.vh - 1) / TILE_CELLS;
+		for(int tx = tx0; tx <= tx1; tx++){
+			for(int ty = ty0; ty <= ty1; ty++){
+				BufferedImage tile = this.tile(tx, ty, cw, ch, gridHeight);
+				int left = (int)Math.floor(tx * TILE_CELLS * cw) + this.offsetX;
+				int top = (int)Math.floor(gridHeight - (ty * TILE_CELLS + TILE_CELLS) * ch) + this.offsetY;
+				bg.drawImage(tile, left, top, null);
+			}
+		}
+		bg.dispose();
+
+		this.frameViewport[0] = this.vx;
+		this.frameViewport[1] = this.vy;
+		this.frameViewport[2] = this.vw;
+		this.frameViewport[3] = this.vh;
+		this.drawnCells.clear();
+		this.frameValid = true;
+	}
+
+	/**
+	 * Returns the cached image of a wall tile, rendering it if needed. The tile's origin is the whole pixel at or
+	 * above and left of its top left corner on the virtual canvas of the whole grid, so a tile is valid wherever the
+	 * viewport is. Open cells are transparent, and the image is larger than the tile so neighboring tiles overlap
+	 * rather than leave seams.
+	 */
+	protected BufferedImage tile(int tx, int ty, float cw, float ch, float gridHeight){
+		Long key = ((long)tx << 32) | (ty & 0xFFFFFFFFL);
+		BufferedImage tile = this.tiles.get(key);
+		if(tile != null){
+			return tile;
+		}
+
+		int tw = (int)Math.ceil(TILE_CELLS * cw) + 2;
+		int th = (int)Math.ceil(TILE_CELLS * ch) + 2;
+		tile = new BufferedImage(tw, th, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2 = tile.createGraphics();
+		g2.setColor(this.wallColor);
+
+		//cells smaller than a pixel are drawn a pixel wide so that walls don't vanish when zoomed out
+		float w = Math.max(cw, 1f);
+		float h = Math.max(ch, 1f);
+		WallGrid walls = this.walls;
+		int x0 = tx * TILE_CELLS;
+		int y0 = ty * TILE_CELLS;
+		int x1 = Math.min(x0 + TILE_CELLS, walls.width());
+		int y1 = Math.min(y0 + TILE_CELLS, walls.height());
+		int ox = (int)Math.floor(x0 * cw);
+		int oy = (int)Math.floor(gridHeight - (y0 + TILE_CELLS) * ch);
+		for(int x = x0; x < x1; x++){
+			int end = x * walls.height() + y1;
+			for(int i = walls.nextWall(x * walls.height() + y0); i != -1 && i < end; i = walls.nextWall(i + 1)){
+				int y = i - x * walls.height();
+				//same cell geometry as the painters use on the virtual canvas, relative to the tile's origin
+				this.rect.setRect(x * cw - ox, gridHeight - ch - y * ch - oy, w, h);
+				g2.fill(this.rect);
+			}
+		}
+		g2.dispose();
+
+		this.tiles.put(key, tile);
+		return tile;
+	}
+
+	/**
+	 * Adds the pixel rectangle of each cell in the viewport to the dirty rectangles, a pixel wider than the cell to
+	 * cover anti-aliased edges, skipping rectangles already added.
+	 */
+	protected void addDirtyRects(Cells cells, int iw, int ih, float cw, float ch, float gridHeight){
+		for(int i = 0; i < cells.size(); i++){
+			int x = cells.x(i);
+			int y = cells.y(i);
+			if(x < this.vx || x >= this.vx + this.vw || y < this.vy || y >= this.vy + this.vh){
+				continue;
+			}
+			int left = Math.max(0, (int)Math.floor(x * cw) + this.offsetX - 1);
+			int top = Math.max(0, (int)Math.floor(gridHeight - ch - y * ch) + this.offsetY - 1);
+			int right = Math.min(iw, (int)Math.ceil((x + 1) * cw) + this.offsetX + 1);
+			int bottom = Math.min(ih, (int)Math.ceil(gridHeight - y * ch) + this.offsetY + 1);
+			Rectangle r = new Rectangle(left, top, right - left, bottom - top);
+			if(!this.dirty.contains(r)){
+				this.dirty.add(r);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,75 @@
+package edu.brown.cs.burlap.tutorials.domain.simple;
+
+import burlap.mdp.core.state.State;
+import burlap.statehashing.HashableState;
+import burlap.statehashing.HashableStateFactory;
+import burlap.statehashing.simple.SimpleHashableStateFactory;
+
+/**
+ * A {@link HashableStateFactory} for {@link ExampleGridWorld} states. An {@link EXGridState} is hashed into a
+ * {@link PackedKey} that holds its position packed into one long by {@link EXGridState#packed()}, so hashing and
+ * equality are integer operations and no variable is boxed. Other states are hashed by a
+ * {@link SimpleHashableStateFactory}.
+ * <p>
+ * The key is taken when the state is hashed and never changes, so a hashed state stays where it was put in a map
+ * even if the state object is later modified in place, e.g., as the output of
+ * {@link ExampleGridWorld.GridWorldStateModel#sampleInto(EXGridState, burlap.mdp.core.action.Action, EXGridState)}.
+ */
+public class EXGridHashableStateFactory implements HashableStateFactory {
+
+	protected HashableStateFactory fallback = new SimpleHashableStateFactory();
+
+	@Override
+	public HashableState hashState(State s) {
+		if(s instanceof EXGridState){
+			return new PackedKey((EXGridState)s);
+		}
+		return this.fallback.hashState(s);
+	}
+
+
+	/**
+	 * An immutable hashed grid world state: the packed position of the state when it was hashed, and the state.
+	 * Two keys are equal if and only if their packed positions are. The hash code is x shifted into the high 16
+	 * bits xor y, which is unique while both coordinates are in [0, 65536).
+	 */
+	public static final class PackedKey implements HashableState {
+
+		protected final long packed;
+		protected final EXGridState s;
+
+		public PackedKey(EXGridState s) {
+			this.packed = s.packed();
+			this.s = s;
+		}
+
+		/**
+		 * Returns the packed position the state had when it was hashed.
+		 * @return the packed position
+		 */
+		public long packed(){
+			return this.packed;
+		}
+
+		@Override
+		public State s() {
+			return this.s;
+		}
+
+		@Override
+		public int hashCode() {
+			return ((int)(this.packed >>> 32) << 16) ^ (int)this.packed;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return this == o || (o instanceof PackedKey && ((PackedKey)o).packed == this.packed);
+		}
+
+		@Override
+		public String toString() {
+			return this.s.toString();
+		}
+	}
+
+}
@@ -65,6 +65,15 @@ public class EXGridState implements MutableState{
 		return new EXGridState(x, y);
 	}
 
+	/**
+	 * Returns the position packed into one long, with x in the high 32 bits and y in the low 32 bits. Two states
+	 * are at the same position if and only if their packed positions are equal.
+	 * @return the packed position
+	 */
+	public long packed(){
+		return ((long)this.x << 32) | (this.y & 0xFFFFFFFFL);
+	}
+
 	@Override
 	public String toString() {
 		return StateUtilities.stateToString(this);
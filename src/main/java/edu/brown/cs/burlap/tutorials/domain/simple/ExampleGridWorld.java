@@ -5,6 +5,7 @@ import burlap.mdp.auxiliary.DomainGenerator;
 import burlap.mdp.core.StateTransitionProb;
 import burlap.mdp.core.TerminalFunction;
 import burlap.mdp.core.action.Action;
+import burlap.mdp.core.action.SimpleAction;
 import burlap.mdp.core.action.UniversalActionType;
 import burlap.mdp.core.state.State;
 import burlap.mdp.singleagent.SADomain;
@@ -21,7 +22,10 @@ import java.awt.*;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 
@@ -42,8 +46,15 @@ public class ExampleGridWorld implements DomainGenerator {
 	protected int goalx = 10;
 	protected int goaly = 10;
 
+	/**
+	 * If set, the goal cells used instead of the single goal location.
+	 */
+	protected GoalCells goalCells;
+
+	protected boolean compiledModel = false;
+
 	//ordered so first dimension is x
-	protected int [][] map = new int[][]{
+	protected WallGrid walls = WallGrid.fromArray(new int[][]{
 			{0,0,0,0,0,1,0,0,0,0,0},
 			{0,0,0,0,0,0,0,0,0,0,0},
 			{0,0,0,0,0,1,0,0,0,0,0},
@@ -55,13 +66,52 @@ public class ExampleGridWorld implements DomainGenerator {
 			{0,0,0,0,0,0,0,0,0,0,0},
 			{0,0,0,0,1,0,0,0,0,0,0},
 			{0,0,0,0,1,0,0,0,0,0,0},
-	};
+	});
+
+	public ExampleGridWorld() {
+	}
+
+	/**
+	 * Creates a grid world with the given walls, e.g., a large map loaded with {@link WallGrid#load(java.io.File)}
+	 * or made by one of the {@link WallGrid} generators.
+	 * @param walls the walls of the grid world
+	 */
+	public ExampleGridWorld(WallGrid walls) {
+		this.walls = walls;
+	}
+
+	public WallGrid getWalls() {
+		return walls;
+	}
+
+	public void setWalls(WallGrid walls) {
+		this.walls = walls;
+	}
 
 	public void setGoalLocation(int goalx, int goaly){
 		this.goalx = goalx;
 		this.goaly = goaly;
 	}
 
+	/**
+	 * Sets a set of goal cells to use instead of the single goal location: the transition entering any of them gives
+	 * a reward of 100 and ends the episode. Set to null to use the single goal location again.
+	 * @param goalCells the goal cells, or null
+	 */
+	public void setGoalCells(GoalCells goalCells){
+		this.goalCells = goalCells;
+	}
+
+	/**
+	 * Sets whether generated domains use a {@link CompiledGridWorldStateModel}, which precomputes the transitions
+	 * of every cell and action so that planners that enumerate transitions many times get them without
+	 * recomputing them.
+	 * @param compiledModel whether to use the compiled state model
+	 */
+	public void setCompiledModel(boolean compiledModel){
+		this.compiledModel = compiledModel;
+	}
+
 
 	@Override
 	public SADomain generateDomain() {
@@ -75,9 +125,17 @@ public class ExampleGridWorld implements DomainGenerator {
 				new UniversalActionType(ACTION_EAST),
 				new UniversalActionType(ACTION_WEST));
 
-		GridWorldStateModel smodel = new GridWorldStateModel();
-		RewardFunction rf = new ExampleRF(this.goalx, this.goaly);
-		TerminalFunction tf = new ExampleTF(this.goalx, this.goaly);
+		GridWorldStateModel smodel = this.compiledModel ? new CompiledGridWorldStateModel() : new GridWorldStateModel();
+		RewardFunction rf;
+		TerminalFunction tf;
+		if(this.goalCells != null){
+			rf = new GoalSetRF(this.goalCells, 100., -1.);
+			tf = new GoalSetTF(this.goalCells);
+		}
+		else{
+			rf = new ExampleRF(this.goalx, this.goaly);
+			tf = new ExampleTF(this.goalx, this.goaly);
+		}
 
 		domain.setModel(new FactoredModel(smodel, rf, tf));
 
@@ -94,17 +152,61 @@ public class ExampleGridWorld implements DomainGenerator {
 		return rl;
 	}
 
+	/**
+	 * Returns a render layer that caches the walls in image tiles and only redraws the cells the agent left and
+	 * entered, which keeps large maps responsive in a visualizer.
+	 * @return the render layer
+	 */
+	public CachedGridRenderLayer getCachedStateRenderLayer(){
+		CachedGridRenderLayer rl = new CachedGridRenderLayer(this.walls, new CachedGridRenderLayer.CellLocator() {
+			@Override
+			public void addCells(State s, CachedGridRenderLayer.Cells cells) {
+				if(s instanceof EXGridState){
+					cells.add(((EXGridState)s).x, ((EXGridState)s).y);
+				}
+				else{
+					cells.add((Integer)s.get(VAR_X), (Integer)s.get(VAR_Y));
+				}
+			}
+		});
+		rl.addStatePainter(new ExampleGridWorld.AgentPainter());
+
+
+		return rl;
+	}
+
 	public Visualizer getVisualizer(){
-		return new Visualizer(this.getStateRenderLayer());
+		return new Visualizer(this.getCachedStateRenderLayer());
 	}
 
 
 
-	protected class GridWorldStateModel implements FullStateModel{
+	/**
+	 * The grid world's state model. Besides the {@link FullStateModel} methods, it offers
+	 * {@link #sampleInto(EXGridState, Action, EXGridState)}, which writes the sampled state into a caller-supplied
+	 * state instead of creating one, for rollouts that do not need to keep each visited state. Sampling draws from a
+	 * random number generator per thread, so parallel rollouts do not contend on a shared one; use
+	 * {@link #setSeed(long)} to make them reproducible.
+	 * <p>
+	 * {@link burlap.mdp.singleagent.environment.SimulatedEnvironment} and the learners built on it keep the states they
+	 * are given: episodes record them, Q-tables store them as keys, and {@link edu.brown.cs.burlap.tutorials.QLTutorial}
+	 * caches the row of the last state by identity. They therefore sample through {@link #sample(State, Action)}, which
+	 * still creates one state per step but no longer allocates anything else or contends on {@link Math#random()}.
+	 * Only code that owns its rollout states and drops each one before overwriting it should call sampleInto.
+	 */
+	public class GridWorldStateModel implements FullStateModel{
 
 
 		protected double [][] transitionProbs;
 
+		/**
+		 * The x and y change of moving in each direction: 0: north; 1: south; 2: east; 3: west.
+		 */
+		protected final int [] xDeltas = new int[]{0, 0, 1, -1};
+		protected final int [] yDeltas = new int[]{1, -1, 0, 0};
+
+		protected ThreadLocal<Random> rand;
+
 		public GridWorldStateModel() {
 			this.transitionProbs = new double[4][4];
 			for(int i = 0; i < 4; i++){
@@ -113,6 +215,28 @@ public class ExampleGridWorld implements DomainGenerator {
 					transitionProbs[i][j] = p;
 				}
 			}
+			this.rand = new ThreadLocal<Random>(){
+				@Override
+				protected Random initialValue() {
+					return new Random();
+				}
+			};
+		}
+
+		/**
+		 * Seeds the random number generators used for sampling. Each thread that samples after this call gets its
+		 * own generator, seeded from the given seed and the order in which threads first sample, so a single thread,
+		 * or threads that start sampling in a fixed order, see the same outcomes on every run.
+		 * @param seed the seed
+		 */
+		public void setSeed(final long seed){
+			final AtomicInteger threads = new AtomicInteger();
+			this.rand = new ThreadLocal<Random>(){
+				@Override
+				protected Random initialValue() {
+					return new Random(seed + 0x9E3779B97F4A7C15L * threads.getAndIncrement());
+				}
+			};
 		}
 
 		@Override
@@ -162,35 +286,61 @@ public class ExampleGridWorld implements DomainGenerator {
 
 		@Override
 		public State sample(State s, Action a) {
-
-			s = s.copy();
 			EXGridState gs = (EXGridState)s;
-			int curX = gs.x;
-			int curY = gs.y;
+			return this.sampleInto(gs, a, new EXGridState(), this.rand.get());
+		}
+
+		/**
+		 * Samples the state that results from taking an action and writes it into another state, using the calling
+		 * thread's random number generator. The source and destination may be the same state.
+		 * @param s the source state
+		 * @param a the action taken
+		 * @param out the state to write the sampled state into
+		 * @return out
+		 */
+		public EXGridState sampleInto(EXGridState s, Action a, EXGridState out){
+			return this.sampleInto(s, a, out, this.rand.get());
+		}
+
+		/**
+		 * Samples the state that results from taking an action and writes it into another state, using the given
+		 * random number generator. The source and destination may be the same state.
+		 * @param s the source state
+		 * @param a the action taken
+		 * @param out the state to write the sampled state into
+		 * @param rand the random number generator to sample with
+		 * @return out
+		 */
+		public EXGridState sampleInto(EXGridState s, Action a, EXGridState out, Random rand){
 
 			int adir = actionDir(a);
 
 			//sample direction with random roll
-			double r = Math.random();
+			double r = rand.nextDouble();
+			double [] probs = this.transitionProbs[adir];
 			double sumProb = 0.;
 			int dir = 0;
 			for(int i = 0; i < 4; i++){
-				sumProb += this.transitionProbs[adir][i];
+				sumProb += probs[i];
 				if(r < sumProb){
 					dir = i;
 					break; //found direction
 				}
 			}
 
-			//get resulting position
-			int [] newPos = this.moveResult(curX, curY, dir);
-
-			//set the new position
-			gs.x = newPos[0];
-			gs.y = newPos[1];
+			//move if the new position is valid
+			int nx = s.x + this.xDeltas[dir];
+			int ny = s.y + this.yDeltas[dir];
+			if(this.open(nx, ny)){
+				out.x = nx;
+				out.y = ny;
+			}
+			else{
+				out.x = s.x;
+				out.y = s.y;
+			}
 
-			//return the state we just modified
-			return gs;
+			return out;
 		}
 
 		protected int actionDir(Action a){
@@ -213,31 +363,12 @@ public class ExampleGridWorld implements DomainGenerator {
 
 		protected int [] moveResult(int curX, int curY, int direction){
 
-			//first get change in x and y from direction using 0: north; 1: south; 2:east; 3: west
-			int xdelta = 0;
-			int ydelta = 0;
-			if(direction == 0){
-				ydelta = 1;
-			}
-			else if(direction == 1){
-				ydelta = -1;
-			}
-			else if(direction == 2){
-				xdelta = 1;
-			}
-			else{
-				xdelta = -1;
-			}
-
-			int nx = curX + xdelta;
-			int ny = curY + ydelta;
-
-			int width = ExampleGridWorld.this.map.length;
-			int height = ExampleGridWorld.this.map[0].length;
+			//get change in x and y from direction using 0: north; 1: south; 2:east; 3: west
+			int nx = curX + this.xDeltas[direction];
+			int ny = curY + this.yDeltas[direction];
 
 			//make sure new position is valid (not a wall or off bounds)
-			if(nx < 0 || nx >= width || ny < 0 || ny >= height ||
-					ExampleGridWorld.this.map[nx][ny] == 1){
+			if(!this.open(nx, ny)){
 				nx = curX;
 				ny = curY;
 			}
@@ -246,6 +377,97 @@ public class ExampleGridWorld implements DomainGenerator {
 			return new int[]{nx,ny};
 
 		}
+
+		/**
+		 * Returns whether a position is in bounds and not a wall.
+		 * @param x the x position
+		 * @param y the y position
+		 * @return whether the agent can occupy the position
+		 */
+		protected boolean open(int x, int y){
+			return ExampleGridWorld.this.walls.isOpen(x, y);
+		}
+	}
+
+
+
+	/**
+	 * A {@link GridWorldStateModel} that precomputes, for every free cell and action, the list of possible outcome
+	 * states and their probabilities, so {@link #stateTransitions(State, Action)} returns a cached list instead of
+	 * building one. The lists, their {@link StateTransitionProb} objects and their states are shared by all callers
+	 * and must not be modified: do not set a probability or an outcome state, or a variable of an outcome state. The
+	 * walls and transition probabilities are read when the model is created, so later changes to them are not reflected.
+	 * The tables hold a few objects per free cell, so this model is meant for maps of up to about a million cells.
+	 */
+	public class CompiledGridWorldStateModel extends GridWorldStateModel {
+
+		protected int width;
+		protected int height;
+
+		/**
+		 * The outcomes of each cell and action direction, at index (x * height + y) * 4 + direction; null for walls.
+		 */
+		protected List<StateTransitionProb> [] outcomes;
+
+		/**
+		 * The action objects already seen for each direction, so that repeated calls with the same action object
+		 * are resolved by identity rather than by comparing names.
+		 */
+		protected Action [] dirActions = new Action[4];
+
+		public CompiledGridWorldStateModel() {
+			WallGrid walls = ExampleGridWorld.this.walls;
+			this.width = walls.width();
+			this.height = walls.height();
+			//arrays of a generic type cannot be created, so the array is created raw; only lists of
+			//StateTransitionProb are ever stored in it
+			@SuppressWarnings({"rawtypes", "unchecked"})
+			List<StateTransitionProb> [] outcomes = new List[this.width * this.height * 4];
+			this.outcomes = outcomes;
+			String [] actionNames = new String[]{ACTION_NORTH, ACTION_SOUTH, ACTION_EAST, ACTION_WEST};
+			for(int x = 0; x < this.width; x++){
+				for(int y = 0; y < this.height; y++){
+					if(walls.isWall(x, y)){
+						continue;
+					}
+					EXGridState cell = new EXGridState(x, y);
+					for(int d = 0; d < 4; d++){
+						List<StateTransitionProb> tps = super.stateTransitions(cell, new SimpleAction(actionNames[d]));
+						this.outcomes[(x * this.height + y) * 4 + d] = Collections.unmodifiableList(tps);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Returns the cached outcomes of an action, which are shared and must not be modified.
+		 * @param s the source state
+		 * @param a the action
+		 * @return the shared list of outcomes
+		 */
+		@Override
+		public List<StateTransitionProb> stateTransitions(State s, Action a) {
+			EXGridState gs = (EXGridState)s;
+			if(gs.x >= 0 && gs.x < this.width && gs.y >= 0 && gs.y < this.height){
+				List<StateTransitionProb> tps = this.outcomes[(gs.x * this.height + gs.y) * 4 + this.actionDir(a)];
+				if(tps != null){
+					return tps;
+				}
+			}
+			return super.stateTransitions(s, a);
+		}
+
+		@Override
+		protected int actionDir(Action a) {
+			for(int d = 0; d < 4; d++){
+				if(this.dirActions[d] == a){
+					return d;
+				}
+			}
+			int d = super.actionDir(a);
+			this.dirActions[d] = a;
+			return d;
+		}
 	}
 
 
@@ -257,36 +479,47 @@ public class ExampleGridWorld implements DomainGenerator {
 			//walls will be filled in black
 			g2.setColor(Color.BLACK);
 
+			WallGrid walls = ExampleGridWorld.this.walls;
+
 			//set up floats for the width and height of our domain
-			float fWidth = ExampleGridWorld.this.map.length;
-			float fHeight = ExampleGridWorld.this.map[0].length;
+			float fWidth = walls.width();
+			float fHeight = walls.height();
 
 			//determine the width of a single cell
 			//on our canvas such that the whole map can be painted
 			float width = cWidth / fWidth;
 			float height = cHeight / fHeight;
 
-			//pass through each cell of our map and if it's a wall, paint a black rectangle on our
-			//cavas of dimension widthxheight
-			for(int i = 0; i < ExampleGridWorld.this.map.length; i++){
-				for(int j = 0; j < ExampleGridWorld.this.map[0].length; j++){
-
-					//is there a wall here?
-					if(ExampleGridWorld.this.map[i][j] == 1){
+			//only the columns and rows inside the clip can show up, so skip the rest
+			int x0 = 0, x1 = walls.width(), y0 = 0, y1 = walls.height();
+			Rectangle clip = g2.getClipBounds();
+			if(clip != null){
+				x0 = Math.max(x0, (int)(clip.x / width));
+				x1 = Math.min(x1, (int)Math.ceil((clip.x + clip.width) / width));
+				y0 = Math.max(y0, (int)((cHeight - clip.y - clip.height) / height));
+				y1 = Math.min(y1, (int)Math.ceil((cHeight - clip.y) / height));
+			}
 
-						//left coordinate of cell on our canvas
-						float rx = i*width;
+			//pass through each wall of our map and paint a black rectangle on our
+			//cavas of dimension widthxheight; scanning the walls skips over open cells quickly
+			Rectangle2D.Float rect = new Rectangle2D.Float();
+			for(int i = x0; i < x1; i++){
+				int end = i * walls.height() + y1;
+				for(int w = walls.nextWall(i * walls.height() + y0); w != -1 && w < end; w = walls.nextWall(w + 1)){
 
-						//top coordinate of cell on our canvas
-						//coordinate system adjustment because the java canvas
-						//origin is in the top left instead of the bottom right
-						float ry = cHeight - height - j*height;
+					int j = w - i * walls.height();
 
-						//paint the rectangle
-						g2.fill(new Rectangle2D.Float(rx, ry, width, height));
+					//left coordinate of cell on our canvas
+					float rx = i*width;
 
-					}
+					//top coordinate of cell on our canvas
+					//coordinate system adjustment because the java canvas
+					//origin is in the top left instead of the bottom right
+					float ry = cHeight - height - j*height;
 
+					//paint the rectangle
+					rect.setRect(rx, ry, width, height);
+					g2.fill(rect);
 
 				}
 			}
@@ -308,8 +541,8 @@ public class ExampleGridWorld implements DomainGenerator {
 			g2.setColor(Color.GRAY);
 
 			//set up floats for the width and height of our domain
-			float fWidth = ExampleGridWorld.this.map.length;
-			float fHeight = ExampleGridWorld.this.map[0].length;
+			float fWidth = ExampleGridWorld.this.walls.width();
+			float fHeight = ExampleGridWorld.this.walls.height();
 
 			//determine the width of a single cell on our canvas
 			//such that the whole map can be painted
@@ -338,6 +571,10 @@ public class ExampleGridWorld implements DomainGenerator {
 	}
 
 
+	/**
+	 * A reward function that gives 100 for entering the goal cell and -1 otherwise. The reward is decided by the
+	 * state sprime the action leads to: the goal is terminal, so no action is ever taken from it.
+	 */
 	public static class ExampleRF implements RewardFunction {
 
 		int goalX;
@@ -351,8 +588,14 @@ public class ExampleGridWorld implements DomainGenerator {
 		@Override
 		public double reward(State s, Action a, State sprime) {
 
-			int ax = (Integer)s.get(VAR_X);
-			int ay = (Integer)s.get(VAR_Y);
+			//read the fields directly from our own state type to avoid boxing
+			if(sprime instanceof EXGridState){
+				EXGridState gs = (EXGridState)sprime;
+				return gs.x == this.goalX && gs.y == this.goalY ? 100. : -1;
+			}
+
+			int ax = (Integer)sprime.get(VAR_X);
+			int ay = (Integer)sprime.get(VAR_Y);
 
 			//are they at goal location?
 			if(ax == this.goalX && ay == this.goalY){
@@ -378,6 +621,12 @@ public class ExampleGridWorld implements DomainGenerator {
 		@Override
 		public boolean isTerminal(State s) {
 
+			//read the fields directly from our own state type to avoid boxing
+			if(s instanceof EXGridState){
+				EXGridState gs = (EXGridState)s;
+				return gs.x == this.goalX && gs.y == this.goalY;
+			}
+
 			//get location of agent in next state
 			int ax = (Integer)s.get(VAR_X);
 			int ay = (Integer)s.get(VAR_Y);
@@ -396,10 +645,58 @@ public class ExampleGridWorld implements DomainGenerator {
 
 
 
+	/**
+	 * A reward function that gives a goal reward for entering any of a set of goal cells and a step reward
+	 * otherwise. As in {@link ExampleRF}, which it replaces when goal cells are set, the reward is decided by the
+	 * state sprime the action leads to, since the goal cells are terminal.
+	 */
+	public static class GoalSetRF implements RewardFunction {
+
+		GoalCells goals;
+		double goalReward;
+		double stepReward;
+
+		public GoalSetRF(GoalCells goals, double goalReward, double stepReward){
+			this.goals = goals;
+			this.goalReward = goalReward;
+			this.stepReward = stepReward;
+		}
+
+		@Override
+		public double reward(State s, Action a, State sprime) {
+			return this.goals.contains(sprime) ? this.goalReward : this.stepReward;
+		}
+
+	}
+
+	/**
+	 * A terminal function that ends episodes in any of a set of goal cells.
+	 */
+	public static class GoalSetTF implements TerminalFunction {
+
+		GoalCells goals;
+
+		public GoalSetTF(GoalCells goals){
+			this.goals = goals;
+		}
+
+		@Override
+		public boolean isTerminal(State s) {
+			return this.goals.contains(s);
+		}
+
+	}
+
+
+
 	public static void main(String [] args){
 
 		ExampleGridWorld gen = new ExampleGridWorld();
 		gen.setGoalLocation(10, 10);
+
+		//or use a large generated map, e.g., a maze with its goal in the far corner
+		//gen = new ExampleGridWorld(WallGrid.maze(1001, 1001, 0));
+		//gen.setGoalLocation(1000, 1000);
 		SADomain domain = gen.generateDomain();
 		State initialState = new EXGridState(0, 0);
 		SimulatedEnvironment env = new SimulatedEnvironment(domain, initialState);
@@ -0,0 +1,69 @@
+package edu.brown.cs.burlap.tutorials.domain.simple;
+
+import burlap.mdp.core.state.State;
+
+import java.util.BitSet;
+
+import static edu.brown.cs.burlap.tutorials.domain.simple.ExampleGridWorld.VAR_X;
+import static edu.brown.cs.burlap.tutorials.domain.simple.ExampleGridWorld.VAR_Y;
+
+/**
+ * A set of goal cells in a grid, stored as a bit per cell (bit x * height + y), so checking whether a state is at
+ * a goal costs the same for one goal cell as for millions. {@link EXGridState}s are checked by reading their fields
+ * directly; other states are read through their x and y variables.
+ */
+public class GoalCells {
+
+	protected int width;
+	protected int height;
+	protected BitSet cells;
+
+
+	/**
+	 * Creates an empty set of goal cells for a grid of the given size.
+	 * @param width the width of the grid
+	 * @param height the height of the grid
+	 */
+	public GoalCells(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.cells = new BitSet(width * height);
+	}
+
+	public GoalCells add(int x, int y){
+		this.cells.set(x * this.height + y);
+		return this;
+	}
+
+	public void remove(int x, int y){
+		this.cells.clear(x * this.height + y);
+	}
+
+	/**
+	 * Returns whether the cell is a goal; cells out of bounds are not.
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @return whether the cell is a goal
+	 */
+	public boolean contains(int x, int y){
+		return x >= 0 && x < this.width && y >= 0 && y < this.height && this.cells.get(x * this.height + y);
+	}
+
+	/**
+	 * Returns whether the agent in the state is at a goal cell.
+	 * @param s the state
+	 * @return whether the agent is at a goal cell
+	 */
+	public boolean contains(State s){
+		if(s instanceof EXGridState){
+			EXGridState gs = (EXGridState)s;
+			return this.contains(gs.x, gs.y);
+		}
+		return this.contains((Integer)s.get(VAR_X), (Integer)s.get(VAR_Y));
+	}
+
+	public int size(){
+		return this.cells.cardinality();
+	}
+
+}
@@ -0,0 +1,335 @@
+package edu.brown.cs.burlap.tutorials.domain.simple;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The walls of a grid world stored as one bit per cell, so that maps with tens of millions of cells take a few
+ * megabytes. Cell (x, y) is bit x * height + y, matching the x-first ordering of {@link ExampleGridWorld}'s maps.
+ * <p>
+ * Grids can be built from an int[][] map, loaded from a file written by {@link #write(File)}, or produced by seeded
+ * generators: {@link #rooms(int, int, int, long)}, {@link #maze(int, int, long)} and
+ * {@link #randomObstacles(int, int, double, long)}. The same seed always produces the same grid.
+ * <p>
+ * The bit words are kept in a {@link LongBuffer}. Built and generated grids use a heap buffer; a loaded grid reads
+ * its walls directly from a read-only memory map of the file, so its pages are brought in from the file as they are
+ * read rather than copied onto the heap, and its walls cannot be changed.
+ */
+public class WallGrid {
+
+	public static final int MAGIC = 0x57414C4C;
+
+	protected int width;
+	protected int height;
+	protected LongBuffer words;
+
+
+	/**
+	 * Creates a grid with no walls.
+	 * @param width the width of the grid
+	 * @param height the height of the grid
+	 */
+	public WallGrid(int width, int height) {
+		if((long)width * height > Integer.MAX_VALUE){
+			throw new IllegalArgumentException("Grids are limited to " + Integer.MAX_VALUE + " cells.");
+		}
+		this.width = width;
+		this.height = height;
+		this.words = LongBuffer.allocate((int)(((long)width * height + 63) >>> 6));
+	}
+
+	protected WallGrid(int width, int height, LongBuffer words) {
+		this.width = width;
+		this.height = height;
+		this.words = words;
+	}
+
+	/**
+	 * Creates a grid from a map ordered so the first dimension is x, where 1 is a wall.
+	 * @param map the map
+	 * @return the grid
+	 */
+	public static WallGrid fromArray(int [][] map){
+		WallGrid grid = new WallGrid(map.length, map[0].length);
+		for(int x = 0; x < map.length; x++){
+			for(int y = 0; y < map[x].length; y++){
+				if(map[x][y] == 1){
+					grid.setWall(x, y, true);
+				}
+			}
+		}
+		return grid;
+	}
+
+	/**
+	 * Loads a grid written by {@link #write(File)}. The walls are read from a read-only memory map of the file, which
+	 * stays valid after this method returns, rather than copied into memory, so {@link #setWall(int, int, boolean)}
+	 * throws a {@link java.nio.ReadOnlyBufferException} on the loaded grid.
+	 * @param file the file
+	 * @return the grid
+	 * @throws IOException if the file cannot be read
+	 */
+	public static WallGrid load(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try{
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(in.getInt() != MAGIC){
+				throw new IOException(file + " is not a wall grid file.");
+			}
+			int width = in.getInt();
+			int height = in.getInt();
+			LongBuffer words = in.asLongBuffer();
+			if(words.capacity() < ((long)width * height + 63) >>> 6){
+				throw new IOException(file + " is shorter than a " + width + "x" + height + " wall grid.");
+			}
+			return new WallGrid(width, height, words);
+		}
+		finally{
+			channel.close();
+		}
+	}
+
+	/**
+	 * Writes this grid to a file: an int magic number, the width and height, then the bit words.
+	 * @param file the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void write(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try{
+			out.writeInt(MAGIC);
+			out.writeInt(this.width);
+			out.writeInt(this.height);
+			ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+			for(int i = 0; i < this.numWords(); i++){
+				long w = this.words.get(i);
+				if(!buf.hasRemaining()){
+					out.write(buf.array(), 0, buf.position());
+					buf.clear();
+				}
+				buf.putLong(w);
+			}
+			out.write(buf.array(), 0, buf.position());
+		}
+		finally{
+			out.close();
+		}
+	}
+
+	/**
+	 * Generates a grid of square rooms separated by walls one cell thick, with one randomly placed door in every
+	 * wall between two neighboring rooms.
+	 * @param width the width of the grid
+	 * @param height the height of the grid
+	 * @param roomSize the width and height of each room
+	 * @param seed the random seed
+	 * @return the grid
+	 */
+	public static WallGrid rooms(int width, int height, int roomSize, long seed){
+		Random rand = new Random(seed);
+		WallGrid grid = new WallGrid(width, height);
+		int period = roomSize + 1;
+
+		//wall lines
+		for(int x = roomSize; x < width; x += period){
+			for(int y = 0; y < height; y++){
+				grid.setWall(x, y, true);
+			}
+		}
+		for(int y = roomSize; y < height; y += period){
+			for(int x = 0; x < width; x++){
+				grid.setWall(x, y, true);
+			}
+		}
+
+		//a door in each wall segment between two rooms
+		for(int x = roomSize; x < width; x += period){
+			for(int y0 = 0; y0 < height; y0 += period){
+				int len = Math.min(roomSize, height - y0);
+				grid.setWall(x, y0 + rand.nextInt(len), false);
+			}
+		}
+		for(int y = roomSize; y < height; y += period){
+			for(int x0 = 0; x0 < width; x0 += period){
+				int len = Math.min(roomSize, width - x0);
+				grid.setWall(x0 + rand.nextInt(len), y, false);
+			}
+		}
+
+		return grid;
+	}
+
+	/**
+	 * Generates a perfect maze (exactly one path between any two open cells) with a randomized depth-first search.
+	 * Open cells are at even coordinates and the passages between them; (0, 0) is always open.
+	 * @param width the width of the grid
+	 * @param height the height of the grid
+	 * @param seed the random seed
+	 * @return the grid
+	 */
+	public static WallGrid maze(int width, int height, long seed){
+		Random rand = new Random(seed);
+		WallGrid grid = new WallGrid(width, height);
+		Arrays.fill(grid.words.array(), -1L);
+		int tail = (int)((long)width * height & 63);
+		if(tail != 0){
+			grid.words.put(grid.numWords() - 1, (1L << tail) - 1);
+		}
+
+		int [] dx = new int[]{0, 0, 2, -2};
+		int [] dy = new int[]{2, -2, 0, 0};
+		int [] dirs = new int[4];
+
+		//explicit stack of cell indices so that huge mazes don't overflow the call stack
+		int [] stack = new int[1024];
+		int top = 0;
+		grid.setWall(0, 0, false);
+		stack[top++] = 0;
+		while(top > 0){
+			int cell = stack[top - 1];
+			int x = cell / height;
+			int y = cell % height;
+
+			//collect unvisited neighbors two cells away
+			int n = 0;
+			for(int d = 0; d < 4; d++){
+				int nx = x + dx[d];
+				int ny = y + dy[d];
+				if(nx >= 0 && nx < width && ny >= 0 && ny < height && grid.isWall(nx, ny)){
+					dirs[n++] = d;
+				}
+			}
+
+			if(n == 0){
+				top--;
+				continue;
+			}
+
+			//carve to a random one
+			int d = dirs[rand.nextInt(n)];
+			int nx = x + dx[d];
+			int ny = y + dy[d];
+			grid.setWall(x + dx[d] / 2, y + dy[d] / 2, false);
+			grid.setWall(nx, ny, false);
+			if(top == stack.length){
+				stack = Arrays.copyOf(stack, top * 2);
+			}
+			stack[top++] = nx * height + ny;
+		}
+
+		return grid;
+	}
+
+	/**
+	 * Generates a grid where each cell is independently a wall with the given probability.
+	 * @param width the width of the grid
+	 * @param height the height of the grid
+	 * @param density the probability that a cell is a wall
+	 * @param seed the random seed
+	 * @return the grid
+	 */
+	public static WallGrid randomObstacles(int width, int height, double density, long seed){
+		Random rand = new Random(seed);
+		WallGrid grid = new WallGrid(width, height);
+		int n = width * height;
+		for(int i = 0; i < n; i++){
+			if(rand.nextDouble() < density){
+				grid.words.put(i >>> 6, grid.words.get(i >>> 6) | 1L << i);
+			}
+		}
+		return grid;
+	}
+
+	public int width(){
+		return this.width;
+	}
+
+	public int height(){
+		return this.height;
+	}
+
+	/**
+	 * Returns whether the cell is a wall. The cell must be in bounds.
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @return whether the cell is a wall
+	 */
+	public boolean isWall(int x, int y){
+		int i = x * this.height + y;
+		return (this.words.get(i >>> 6) & (1L << i)) != 0;
+	}
+
+	/**
+	 * Returns whether the cell is in bounds and not a wall.
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @return whether the agent can occupy the cell
+	 */
+	public boolean isOpen(int x, int y){
+		return x >= 0 && x < this.width && y >= 0 && y < this.height && !this.isWall(x, y);
+	}
+
+	/**
+	 * Sets whether a cell is a wall. The cell must be in bounds, and the grid must not have been loaded from a file.
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @param wall whether the cell is a wall
+	 */
+	public void setWall(int x, int y, boolean wall){
+		int i = x * this.height + y;
+		long word = this.words.get(i >>> 6);
+		this.words.put(i >>> 6, wall ? word | 1L << i : word & ~(1L << i));
+	}
+
+	/**
+	 * Returns the index (x * height + y) of the first wall at or after the given cell index, or -1 if there is none.
+	 * Scanning with this skips runs of 64 open cells at a time.
+	 * @param from the cell index to start from
+	 * @return the index of the next wall, or -1
+	 */
+	public int nextWall(int from){
+		int n = this.width * this.height;
+		if(from >= n){
+			return -1;
+		}
+		int w = from >>> 6;
+		long word = this.words.get(w) & (-1L << from);
+		while(true){
+			if(word != 0){
+				int i = (w << 6) + Long.numberOfTrailingZeros(word);
+				return i < n ? i : -1;
+			}
+			if(++w == this.numWords()){
+				return -1;
+			}
+			word = this.words.get(w);
+		}
+	}
+
+	public int numWalls(){
+		int n = 0;
+		for(int i = 0; i < this.numWords(); i++){
+			n += Long.bitCount(this.words.get(i));
+		}
+		return n;
+	}
+
+	/**
+	 * Returns the number of 64-bit words holding the grid's bits.
+	 * @return the number of words
+	 */
+	protected int numWords(){
+		return (int)(((long)this.width * this.height + 63) >>> 6);
+	}
+
+}
@@ -0,0 +1,237 @@
+package edu.brown.cs.burlap.tutorials.environment;
+
+import burlap.mdp.auxiliary.StateGenerator;
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.state.State;
+import burlap.mdp.singleagent.SADomain;
+import burlap.mdp.singleagent.environment.EnvironmentOutcome;
+import burlap.mdp.singleagent.environment.SimulatedEnvironment;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A batch of independent {@link SimulatedEnvironment}s that are stepped together. Each call to
+ * {@link #step(Action[])} executes one action in every member and writes the results into buffers that are
+ * allocated once and reused on every step: the resulting states, rewards, whether each member reached a terminal
+ * state, and whether each member's episode ended. A member whose episode ended (by reaching a terminal state or the
+ * max episode length) is reset right away, so {@link #observations()} always holds states to act from and the
+ * learner never has to handle resets itself.
+ * <p>
+ * Members can be stepped in parallel with {@link #setParallelism(int)}, in which case the members' models must be
+ * safe to sample from multiple threads.
+ */
+public class BatchedEnvironment {
+
+	protected SimulatedEnvironment [] envs;
+
+	protected State [] observations;
+	protected State [] nextObservations;
+	protected double [] rewards;
+	protected boolean [] terminated;
+	protected boolean [] episodeEnded;
+	protected int [] episodeSteps;
+
+	protected int maxEpisodeSteps = -1;
+	protected long numEpisodesEnded;
+
+	protected ForkJoinPool pool;
+	protected int chunkSize = 16;
+
+
+	/**
+	 * Creates a batch of environments over the same domain, each starting episodes from the state generator.
+	 * @param domain the domain
+	 * @param sg the initial state generator
+	 * @param size the number of environments
+	 */
+	public BatchedEnvironment(SADomain domain, StateGenerator sg, int size){
+		this.envs = new SimulatedEnvironment[size];
+		for(int i = 0; i < size; i++){
+			this.envs[i] = new SimulatedEnvironment(domain, sg);
+		}
+		this.init();
+	}
+
+	/**
+	 * Creates a batch of the given environments.
+	 * @param envs the environments
+	 */
+	public BatchedEnvironment(SimulatedEnvironment... envs){
+		this.envs = envs.clone();
+		this.init();
+	}
+
+	/**
+	 * Sets the max number of steps in an episode, after which a member is reset even if it is not in a terminal
+	 * state.
+	 * @param maxEpisodeSteps the max number of steps in an episode, or -1 for no limit
+	 */
+	public void setMaxEpisodeSteps(int maxEpisodeSteps) {
+		this.maxEpisodeSteps = maxEpisodeSteps;
+	}
+
+	/**
+	 * Steps members in parallel on a pool of the given number of threads, or sequentially if parallelism is 1.
+	 * @param parallelism the number of threads
+	 */
+	public void setParallelism(int parallelism){
+		if(this.pool != null){
+			this.pool.shutdown();
+		}
+		this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+	}
+
+	public int size(){
+		return this.envs.length;
+	}
+
+	public SimulatedEnvironment member(int i){
+		return this.envs[i];
+	}
+
+	/**
+	 * Executes actions[i] in member i for every member.
+	 * @param actions the action for each member
+	 */
+	public void step(Action [] actions){
+		if(this.pool != null){
+			this.pool.invoke(new StepTask(actions, 0, this.envs.length));
+		}
+		else{
+			this.step(actions, 0, this.envs.length);
+		}
+		for(boolean ended : this.episodeEnded){
+			if(ended){
+				this.numEpisodesEnded++;
+			}
+		}
+	}
+
+	/**
+	 * Resets every member to the start of a new episode.
+	 */
+	public void resetAll(){
+		for(int i = 0; i < this.envs.length; i++){
+			this.envs[i].resetEnvironment();
+			this.observations[i] = this.envs[i].currentObservation();
+			this.episodeSteps[i] = 0;
+		}
+	}
+
+	/**
+	 * Returns the current state of each member, to select the next actions from. The array is reused.
+	 * @return the current states
+	 */
+	public State [] observations(){
+		return this.observations;
+	}
+
+	/**
+	 * Returns the state each member reached in the last step. This is the state before any reset, so it differs
+	 * from the member's observation if its episode ended. The array is reused.
+	 * @return the states reached in the last step
+	 */
+	public State [] nextObservations(){
+		return this.nextObservations;
+	}
+
+	/**
+	 * Returns the reward each member received in the last step. The array is reused.
+	 * @return the rewards of the last step
+	 */
+	public double [] rewards(){
+		return this.rewards;
+	}
+
+	/**
+	 * Returns whether each member reached a terminal state in the last step. The array is reused.
+	 * @return whether each member reached a terminal state
+	 */
+	public boolean [] terminated(){
+		return this.terminated;
+	}
+
+	/**
+	 * Returns whether each member's episode ended in the last step, either at a terminal state or at the max
+	 * episode length, and so was reset. The array is reused.
+	 * @return whether each member's episode ended
+	 */
+	public boolean [] episodeEnded(){
+		return this.episodeEnded;
+	}
+
+	/**
+	 * Returns the total number of episodes that have ended across all members.
+	 * @return the number of ended episodes
+	 */
+	public long getNumEpisodesEnded() {
+		return numEpisodesEnded;
+	}
+
+	protected void init(){
+		int n = this.envs.length;
+		this.observations = new State[n];
+		this.nextObservations = new State[n];
+		this.rewards = new double[n];
+		this.terminated = new boolean[n];
+		this.episodeEnded = new boolean[n];
+		this.episodeSteps = new int[n];
+		for(int i = 0; i < n; i++){
+			this.observations[i] = this.envs[i].currentObservation();
+		}
+	}
+
+	protected void step(Action [] actions, int from, int to){
+		for(int i = from; i < to; i++){
+			SimulatedEnvironment env = this.envs[i];
+			EnvironmentOutcome eo = env.executeAction(actions[i]);
+			this.nextObservations[i] = eo.op;
+			this.rewards[i] = eo.r;
+			this.terminated[i] = eo.terminated;
+
+			int steps = ++this.episodeSteps[i];
+			boolean ended = eo.terminated || steps == this.maxEpisodeSteps;
+			this.episodeEnded[i] = ended;
+			if(ended){
+				env.resetEnvironment();
+				this.episodeSteps[i] = 0;
+				this.observations[i] = env.currentObservation();
+			}
+			else{
+				this.observations[i] = eo.op;
+			}
+		}
+	}
+
+
+	/**
+	 * Steps a range of members, splitting it between threads until it is at most the chunk size.
+	 */
+	protected class StepTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		protected Action [] actions;
+		protected int from;
+		protected int to;
+
+		public StepTask(Action [] actions, int from, int to) {
+			this.actions = actions;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(this.to - this.from <= chunkSize){
+				step(this.actions, this.from, this.to);
+			}
+			else{
+				int mid = (this.from + this.to) >>> 1;
+				invokeAll(new StepTask(this.actions, this.from, mid), new StepTask(this.actions, mid, this.to));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,200 @@
+package edu.brown.cs.burlap.tutorials.render;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writes frames to an animated GIF. GIF frames have a palette of at most 256 colors, so the worker threads convert
+ * each frame to an indexed image with an exact palette, which is fast and lossless for the flat colors domain
+ * visualizers paint with, leaving only the compression to the writing thread. Frames with more than 256 colors are
+ * passed on as they are and quantized by ImageIO's GIF writer, which is much slower; use an
+ * {@link ImageSequenceWriter} for those.
+ */
+public class AnimatedGifWriter implements EpisodeRenderer.FrameSink<BufferedImage> {
+
+	protected ImageWriter writer;
+	protected ImageOutputStream out;
+	protected int frameDelayMs;
+	protected boolean loop;
+	protected int numFrames;
+
+
+	/**
+	 * Initializes, creating the file.
+	 * @param file the GIF file
+	 * @param frameDelayMs the time each frame is shown, in milliseconds; GIFs store it in hundredths of a second
+	 * @param loop whether the animation repeats forever
+	 * @throws IOException if the file cannot be created
+	 */
+	public AnimatedGifWriter(File file, int frameDelayMs, boolean loop) throws IOException {
+		this.writer = ImageIO.getImageWritersByFormatName("gif").next();
+		if(file.exists() && !file.delete()){
+			throw new IOException("Could not replace " + file);
+		}
+		this.out = ImageIO.createImageOutputStream(file);
+		if(this.out == null){
+			throw new IOException("Could not create " + file);
+		}
+		this.writer.setOutput(this.out);
+		this.writer.prepareWriteSequence(null);
+		this.frameDelayMs = frameDelayMs;
+		this.loop = loop;
+	}
+
+	@Override
+	public BufferedImage encodeFrame(BufferedImage frame, int index) throws IOException {
+		BufferedImage indexed = toIndexed(frame);
+		if(indexed != null){
+			return indexed;
+		}
+		//too many colors for an exact palette; copy the frame since the renderer reuses it
+		BufferedImage copy = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_INT_RGB);
+		copy.setData(frame.getRaster());
+		return copy;
+	}
+
+	@Override
+	public void writeFrame(BufferedImage frame, int index) throws IOException {
+		//each frame has its own palette, so each gets its own metadata
+		this.writer.writeToSequence(new IIOImage(frame, null, this.createMetadata(frame)), null);
+		this.numFrames++;
+	}
+
+	/**
+	 * Converts an image to an indexed image whose palette holds exactly the image's colors, or returns null if the
+	 * image has more than 256 colors.
+	 * @param img the image
+	 * @return the indexed image, or null
+	 */
+	public static BufferedImage toIndexed(BufferedImage img){
+		int w = img.getWidth();
+		int h = img.getHeight();
+		int [] rgb = img.getRGB(0, 0, w, h, null, 0, w);
+		byte [] pixels = new byte[rgb.length];
+
+		//open addressing table from color to palette index; flat images have long runs of one color, so check the
+		//previous pixel's color first
+		int [] keys = new int[1024];
+		int [] vals = new int[1024];
+		Arrays.fill(vals, -1);
+		int [] palette = new int[256];
+		int numColors = 0;
+		int lastColor = 0;
+		int lastIndex = -1;
+		for(int i = 0; i < rgb.length; i++){
+			int c = rgb[i] & 0xFFFFFF;
+			if(c != lastColor || lastIndex == -1){
+				int slot = (c * 0x9E3779B1) >>> 22;
+				while(vals[slot] != -1 && keys[slot] != c){
+					slot = (slot + 1) & 1023;
+				}
+				if(vals[slot] == -1){
+					if(numColors == 256){
+						return null;
+					}
+					keys[slot] = c;
+					vals[slot] = numColors;
+					palette[numColors++] = c;
+				}
+				lastColor = c;
+				lastIndex = vals[slot];
+			}
+			pixels[i] = (byte)lastIndex;
+		}
+
+		int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(numColors - 1));
+		IndexColorModel cm = new IndexColorModel(bits, numColors, palette, 0, false, -1, DataBuffer.TYPE_BYTE);
+		BufferedImage indexed = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_INDEXED, cm);
+		byte [] data = ((DataBufferByte)indexed.getRaster().getDataBuffer()).getData();
+		System.arraycopy(pixels, 0, data, 0, pixels.length);
+		return indexed;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try{
+			this.writer.endWriteSequence();
+		}
+		finally{
+			this.out.close();
+			this.writer.dispose();
+		}
+	}
+
+	public int getNumFrames() {
+		return numFrames;
+	}
+
+	protected IIOMetadata createMetadata(BufferedImage frame) throws IOException {
+		IIOMetadata md = this.writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(frame), null);
+		String format = md.getNativeMetadataFormatName();
+		IIOMetadataNode root = (IIOMetadataNode)md.getAsTree(format);
+
+		IIOMetadataNode control = child(root, "GraphicControlExtension");
+		control.setAttribute("disposalMethod", "none");
+		control.setAttribute("userInputFlag", "FALSE");
+		control.setAttribute("transparentColorFlag", "FALSE");
+		control.setAttribute("delayTime", Integer.toString(Math.max(1, this.frameDelayMs / 10)));
+		control.setAttribute("transparentColorIndex", "0");
+
+		//the default metadata's color table does not come from the image, so write the image's palette explicitly
+		if(frame.getColorModel() instanceof IndexColorModel){
+			IndexColorModel cm = (IndexColorModel)frame.getColorModel();
+			int size = 2;
+			while(size < cm.getMapSize()){
+				size <<= 1;
+			}
+			IIOMetadataNode table = child(root, "LocalColorTable");
+			while(table.getLength() > 0){
+				table.removeChild(table.getFirstChild());
+			}
+			table.setAttribute("sizeOfLocalColorTable", Integer.toString(size));
+			table.setAttribute("sortFlag", "FALSE");
+			for(int i = 0; i < size; i++){
+				int c = i < cm.getMapSize() ? cm.getRGB(i) : 0;
+				IIOMetadataNode entry = new IIOMetadataNode("ColorTableEntry");
+				entry.setAttribute("index", Integer.toString(i));
+				entry.setAttribute("red", Integer.toString((c >> 16) & 0xFF));
+				entry.setAttribute("green", Integer.toString((c >> 8) & 0xFF));
+				entry.setAttribute("blue", Integer.toString(c & 0xFF));
+				table.appendChild(entry);
+			}
+		}
+
+		if(this.loop){
+			//the NETSCAPE2.0 application extension with a loop count of 0 repeats forever
+			IIOMetadataNode app = new IIOMetadataNode("ApplicationExtension");
+			app.setAttribute("applicationID", "NETSCAPE");
+			app.setAttribute("authenticationCode", "2.0");
+			app.setUserObject(new byte[]{1, 0, 0});
+			child(root, "ApplicationExtensions").appendChild(app);
+		}
+
+		md.setFromTree(format, root);
+		return md;
+	}
+
+	protected static IIOMetadataNode child(IIOMetadataNode parent, String name){
+		for(int i = 0; i < parent.getLength(); i++){
+			if(parent.item(i).getNodeName().equals(name)){
+				return (IIOMetadataNode)parent.item(i);
+			}
+		}
+		IIOMetadataNode node = new IIOMetadataNode(name);
+		parent.appendChild(node);
+		return node;
+	}
+
+}
@@ -0,0 +1,330 @@
+package edu.brown.cs.burlap.tutorials.render;
+
+import burlap.behavior.singleagent.Episode;
+import burlap.mdp.core.state.State;
+import burlap.visualizer.StatePainter;
+import burlap.visualizer.StateRenderLayer;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Renders recorded {@link Episode}s to image files without a window, so recordings can be made on servers with no
+ * display and at whatever speed the machine renders rather than at display speed. Each state of each episode is
+ * painted by a {@link StateRenderLayer} into an offscreen image on a pool of worker threads, where a {@link FrameSink},
+ * such as an {@link ImageSequenceWriter} or an {@link AnimatedGifWriter}, also does the expensive part of encoding
+ * it; the encoded frames are then handed to the sink in order. Only a bounded number of frames are in flight at once
+ * and the rendered images are reused, so memory use does not grow with the length of the episodes.
+ * <p>
+ * Render layers keep the state they paint, so every worker thread paints with its own layer. A plain
+ * {@link StateRenderLayer} given to the constructor is copied for each worker, sharing its state painters, which
+ * must therefore be safe to call from several threads at once; BURLAP's painters and the example grid world
+ * painters are. Subclasses of StateRenderLayer, such as {@link edu.brown.cs.burlap.tutorials.domain.simple.CachedGridRenderLayer},
+ * cannot be copied, so for them use the {@link LayerFactory} constructor, or the one layer is used by one worker
+ * at a time.
+ * <p>
+ * On Linux without a DISPLAY, Java runs headless by default; otherwise set -Djava.awt.headless=true.
+ */
+public class EpisodeRenderer {
+
+	/**
+	 * Creates a render layer for a worker thread.
+	 */
+	public interface LayerFactory {
+		/**
+		 * Creates a new render layer.
+		 * @return the render layer
+		 */
+		StateRenderLayer createLayer();
+	}
+
+	/**
+	 * Encodes rendered frames on the worker threads and writes them in order.
+	 * @param <T> the type of an encoded frame
+	 */
+	public interface FrameSink<T> {
+		/**
+		 * Encodes a frame. This is called on the worker threads, concurrently and in any order. The image is reused
+		 * for a later frame once this returns, so it must not be kept.
+		 * @param frame the rendered frame
+		 * @param index the number of the frame, counting from 0
+		 * @return the encoded frame
+		 * @throws IOException if the frame cannot be encoded
+		 */
+		T encodeFrame(BufferedImage frame, int index) throws IOException;
+
+		/**
+		 * Writes the next encoded frame. This is called on the thread rendering the episodes, in frame order.
+		 * @param frame the encoded frame
+		 * @param index the number of the frame, counting from 0
+		 * @throws IOException if the frame cannot be written
+		 */
+		void writeFrame(T frame, int index) throws IOException;
+
+		/**
+		 * Finishes writing and releases any resources.
+		 * @throws IOException if the output cannot be finished
+		 */
+		void close() throws IOException;
+	}
+
+
+	protected int width;
+	protected int height;
+	protected Color backgroundColor = Color.WHITE;
+	protected int numThreads = Runtime.getRuntime().availableProcessors();
+	protected int maxFramesInFlight;
+	protected int frameStride = 1;
+
+	protected ThreadLocal<StateRenderLayer> layers;
+	protected StateRenderLayer sharedLayer;
+
+	protected ConcurrentLinkedQueue<BufferedImage> freeImages = new ConcurrentLinkedQueue<BufferedImage>();
+
+
+	/**
+	 * Initializes with a render layer. If it is a plain {@link StateRenderLayer}, each worker paints with a copy that
+	 * shares its state painters; otherwise the workers take turns with it.
+	 * @param layer the render layer
+	 * @param width the width of the frames in pixels
+	 * @param height the height of the frames in pixels
+	 */
+	public EpisodeRenderer(final StateRenderLayer layer, int width, int height) {
+		this.width = width;
+		this.height = height;
+		if(layer.getClass() == StateRenderLayer.class){
+			this.layers = new ThreadLocal<StateRenderLayer>(){
+				@Override
+				protected StateRenderLayer initialValue() {
+					StateRenderLayer copy = new StateRenderLayer();
+					for(StatePainter sp : layer.getStatePainters()){
+						copy.addStatePainter(sp);
+					}
+					return copy;
+				}
+			};
+		}
+		else{
+			this.sharedLayer = layer;
+		}
+		this.maxFramesInFlight = 4 * this.numThreads;
+	}
+
+	/**
+	 * Initializes with a factory that creates a render layer for each worker thread.
+	 * @param layerFactory the render layer factory
+	 * @param width the width of the frames in pixels
+	 * @param height the height of the frames in pixels
+	 */
+	public EpisodeRenderer(final LayerFactory layerFactory, int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.layers = new ThreadLocal<StateRenderLayer>(){
+			@Override
+			protected StateRenderLayer initialValue() {
+				return layerFactory.createLayer();
+			}
+		};
+		this.maxFramesInFlight = 4 * this.numThreads;
+	}
+
+	/**
+	 * Sets the number of worker threads, and the max number of frames in flight to four per worker.
+	 * @param numThreads the number of worker threads, which must be at least 1
+	 */
+	public void setNumThreads(int numThreads) {
+		requirePositive("number of threads", numThreads);
+		this.numThreads = numThreads;
+		this.maxFramesInFlight = 4 * numThreads;
+	}
+
+	/**
+	 * Sets the max number of frames being rendered or waiting to be written at once, which bounds memory use.
+	 * @param maxFramesInFlight the max number of frames in flight, which must be at least 1
+	 */
+	public void setMaxFramesInFlight(int maxFramesInFlight) {
+		requirePositive("max number of frames in flight", maxFramesInFlight);
+		this.maxFramesInFlight = maxFramesInFlight;
+	}
+
+	public void setBackgroundColor(Color backgroundColor) {
+		this.backgroundColor = backgroundColor;
+	}
+
+	/**
+	 * Renders only every frameStride-th state of each episode, plus its last state.
+	 * @param frameStride the number of states per rendered frame, which must be at least 1
+	 */
+	public void setFrameStride(int frameStride) {
+		requirePositive("frame stride", frameStride);
+		this.frameStride = frameStride;
+	}
+
+	/**
+	 * Renders episodes to a sequence of numbered image files.
+	 * @param episodes the episodes
+	 * @param directory the directory to write the images to, which is created if needed
+	 * @param format the ImageIO format name, e.g., "png"
+	 * @return the number of frames written
+	 * @throws IOException if an image cannot be written
+	 */
+	public int writeImageSequence(List<Episode> episodes, File directory, String format) throws IOException {
+		ImageSequenceWriter out = new ImageSequenceWriter(directory, "frame", format);
+		try{
+			return this.render(episodes, out);
+		}
+		finally{
+			out.close();
+		}
+	}
+
+	/**
+	 * Renders episodes to an animated GIF that loops forever.
+	 * @param episodes the episodes
+	 * @param file the GIF file
+	 * @param frameDelayMs the time each frame is shown, in milliseconds
+	 * @return the number of frames written
+	 * @throws IOException if the file cannot be written
+	 */
+	public int writeGif(List<Episode> episodes, File file, int frameDelayMs) throws IOException {
+		AnimatedGifWriter out = new AnimatedGifWriter(file, frameDelayMs, true);
+		try{
+			return this.render(episodes, out);
+		}
+		finally{
+			out.close();
+		}
+	}
+
+	/**
+	 * Renders the states of episodes, one after another, and writes the frames in order to a sink. The sink is not
+	 * closed.
+	 * @param episodes the episodes
+	 * @param sink the sink to encode and write frames with
+	 * @param <T> the type of an encoded frame
+	 * @return the number of frames written
+	 * @throws IOException if the sink fails to encode or write a frame
+	 */
+	public <T> int render(List<Episode> episodes, final FrameSink<T> sink) throws IOException {
+		ExecutorService workers = Executors.newFixedThreadPool(this.numThreads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "episode-renderer");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		ArrayDeque<Future<T>> inFlight = new ArrayDeque<Future<T>>(this.maxFramesInFlight);
+		int numFrames = 0;
+		int numSubmitted = 0;
+		try{
+			for(Episode e : episodes){
+				int n = e.stateSequence.size();
+				for(int t = 0; t < n; t++){
+					if(t % this.frameStride != 0 && t != n - 1){
+						continue;
+					}
+
+					//write the oldest frame before starting another once the window is full
+					if(inFlight.size() == this.maxFramesInFlight){
+						this.writeNext(inFlight, sink, numFrames++);
+					}
+					final State s = e.stateSequence.get(t);
+					final int index = numSubmitted++;
+					inFlight.add(workers.submit(new Callable<T>() {
+						@Override
+						public T call() throws Exception {
+							BufferedImage img = renderFrame(s);
+							T encoded = sink.encodeFrame(img, index);
+							freeImages.add(img);
+							return encoded;
+						}
+					}));
+				}
+			}
+			while(!inFlight.isEmpty()){
+				this.writeNext(inFlight, sink, numFrames++);
+			}
+		}
+		finally{
+			workers.shutdownNow();
+		}
+
+		return numFrames;
+	}
+
+	/**
+	 * Renders a state into an image on the calling thread. The image may be one released by an earlier frame, and
+	 * can be handed back for reuse with {@link #releaseFrame(BufferedImage)}.
+	 * @param s the state
+	 * @return the rendered image
+	 */
+	public BufferedImage renderFrame(State s){
+		BufferedImage img = this.freeImages.poll();
+		if(img == null){
+			img = new BufferedImage(this.width, this.height, BufferedImage.TYPE_INT_RGB);
+		}
+		Graphics2D g2 = img.createGraphics();
+		g2.setColor(this.backgroundColor);
+		g2.fillRect(0, 0, this.width, this.height);
+		if(this.sharedLayer != null){
+			synchronized(this.sharedLayer){
+				this.sharedLayer.updateState(s);
+				this.sharedLayer.render(g2, this.width, this.height);
+			}
+		}
+		else{
+			StateRenderLayer layer = this.layers.get();
+			layer.updateState(s);
+			layer.render(g2, this.width, this.height);
+		}
+		g2.dispose();
+		return img;
+	}
+
+	/**
+	 * Hands an image returned by {@link #renderFrame(State)} back for reuse.
+	 * @param frame the image
+	 */
+	public void releaseFrame(BufferedImage frame){
+		this.freeImages.add(frame);
+	}
+
+	protected <T> void writeNext(ArrayDeque<Future<T>> inFlight, FrameSink<T> sink, int index) throws IOException {
+		T frame;
+		try{
+			frame = inFlight.poll().get();
+		}
+		catch(ExecutionException e){
+			if(e.getCause() instanceof IOException){
+				throw (IOException)e.getCause();
+			}
+			throw new RuntimeException("Failed to render a frame.", e.getCause());
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while rendering.");
+		}
+		sink.writeFrame(frame, index);
+	}
+
+	protected static void requirePositive(String name, int value){
+		if(value < 1){
+			throw new IllegalArgumentException("The " + name + " must be at least 1, but it is " + value + ".");
+		}
+	}
+
+}
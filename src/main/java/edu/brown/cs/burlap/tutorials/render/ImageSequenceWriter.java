@@ -0,0 +1,60 @@
+package edu.brown.cs.burlap.tutorials.render;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes frames to numbered image files, e.g., frame000000.png, frame000001.png, ..., which video tools such as
+ * ffmpeg can encode directly. Each file is written by the worker thread that rendered its frame.
+ */
+public class ImageSequenceWriter implements EpisodeRenderer.FrameSink<File> {
+
+	protected File directory;
+	protected String prefix;
+	protected String format;
+	protected int numFrames;
+
+
+	/**
+	 * Initializes, creating the directory if needed.
+	 * @param directory the directory to write the images to
+	 * @param prefix the file name prefix, which is followed by the six digit frame number
+	 * @param format the ImageIO format name, which is also the file extension, e.g., "png"
+	 * @throws IOException if the directory cannot be created or the format is not supported
+	 */
+	public ImageSequenceWriter(File directory, String prefix, String format) throws IOException {
+		if(!directory.isDirectory() && !directory.mkdirs()){
+			throw new IOException("Could not create directory " + directory);
+		}
+		if(!ImageIO.getImageWritersByFormatName(format).hasNext()){
+			throw new IOException("No image writer for format " + format);
+		}
+		this.directory = directory;
+		this.prefix = prefix;
+		this.format = format;
+	}
+
+	@Override
+	public File encodeFrame(BufferedImage frame, int index) throws IOException {
+		File file = new File(this.directory, String.format("%s%06d.%s", this.prefix, index, this.format));
+		ImageIO.write(frame, this.format, file);
+		return file;
+	}
+
+	@Override
+	public void writeFrame(File frame, int index) throws IOException {
+		this.numFrames++;
+	}
+
+	@Override
+	public void close() throws IOException {
+		//each frame is a complete file
+	}
+
+	public int getNumFrames() {
+		return numFrames;
+	}
+
+}
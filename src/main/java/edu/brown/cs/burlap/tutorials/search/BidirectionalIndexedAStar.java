@@ -0,0 +1,158 @@
+package edu.brown.cs.burlap.tutorials.search;
+
+import burlap.behavior.singleagent.planning.deterministic.SDPlannerPolicy;
+import burlap.behavior.singleagent.planning.deterministic.informed.Heuristic;
+import burlap.debugtools.DPrint;
+import burlap.mdp.auxiliary.stateconditiontest.StateConditionTest;
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.action.ActionType;
+import burlap.mdp.core.state.State;
+import burlap.mdp.singleagent.SADomain;
+import burlap.mdp.singleagent.environment.EnvironmentOutcome;
+import burlap.statehashing.HashableStateFactory;
+
+/**
+ * A bidirectional version of {@link IndexedAStar} that searches forward from the initial state and backward from a
+ * given goal state at the same time, expanding from whichever side has the smaller open list, and stops once no path
+ * through either open list can be cheaper than the best path found where the two searches meet. Each side has its own
+ * heuristic: the forward one estimates the reward to the goal state and the backward one the reward from the initial
+ * state.
+ * <p>
+ * BURLAP models only generate successors, so the backward search takes the successors of a state as its predecessors.
+ * This requires reversible transitions: every move from s to s' must be undoable by some action from s' with the same
+ * reward, as in grid worlds. The goal side of the plan is found by looking for such an action, and planning fails
+ * with an exception if there is none.
+ */
+public class BidirectionalIndexedAStar extends IndexedAStar {
+
+	protected State goalState;
+	protected Frontier backward;
+
+
+	/**
+	 * Initializes.
+	 * @param domain the domain in which to plan
+	 * @param goalState the goal state from which to search backward
+	 * @param gc the goal condition, which must be satisfied by the goal state
+	 * @param hashingFactory the hashing factory used for the policy of the found plan
+	 * @param heuristic the heuristic estimate of the reward to the goal state
+	 * @param backwardHeuristic the heuristic estimate of the reward from the initial state
+	 * @param encoder the encoder of states to ids
+	 */
+	public BidirectionalIndexedAStar(SADomain domain, State goalState, StateConditionTest gc,
+									 HashableStateFactory hashingFactory, Heuristic heuristic,
+									 Heuristic backwardHeuristic, StateEncoder encoder) {
+		super(domain, gc, hashingFactory, heuristic, encoder);
+		this.goalState = goalState;
+		this.backward = new Frontier(backwardHeuristic);
+	}
+
+	@Override
+	public SDPlannerPolicy planFromState(State initialState) {
+		if(this.internalPolicy.containsKey(this.hashingFactory.hashState(initialState))){
+			return new SDPlannerPolicy(this);
+		}
+
+		int meet = this.search(initialState);
+		DPrint.cl(this.debugCode, "Num Expanded: " + this.getNumExpanded());
+		if(meet == -1){
+			throw new PlanningFailedException();
+		}
+		this.encodePath(this.forward, meet);
+		this.encodeBackwardPath(meet);
+
+		return new SDPlannerPolicy(this);
+	}
+
+	@Override
+	public int getNumExpanded() {
+		return this.forward.numExpanded + this.backward.numExpanded;
+	}
+
+	/**
+	 * Searches from both ends and returns the id of the state where the best path found meets, or -1 if the goal
+	 * state is not reachable.
+	 * @param initialState the state from which to search
+	 * @return the id of the meeting state, or -1
+	 */
+	@Override
+	protected int search(State initialState) {
+		Frontier fwd = this.forward;
+		Frontier bwd = this.backward;
+		fwd.reset();
+		bwd.reset();
+		fwd.start(this.encoder.encode(initialState), initialState);
+		bwd.start(this.encoder.encode(this.goalState), this.goalState);
+		if(fwd.root == bwd.root){
+			return fwd.root;
+		}
+
+		int meet = -1;
+		double best = Double.POSITIVE_INFINITY;
+		while(!fwd.open.isEmpty() && !bwd.open.isEmpty()){
+
+			//every cheaper path would have to pass through both open lists with an f no larger than its cost
+			if(best <= Math.max(fwd.open.peekKey(), bwd.open.peekKey())){
+				break;
+			}
+
+			boolean forwardStep = fwd.open.size() <= bwd.open.size();
+			Frontier f = forwardStep ? fwd : bwd;
+			Frontier other = forwardStep ? bwd : fwd;
+			int id = f.poll();
+			State s = f.states[id];
+			if(forwardStep && this.model.terminal(s)){
+				continue;
+			}
+			for(ActionType at : this.actionTypes){
+				for(Action a : at.allApplicableActions(s)){
+					EnvironmentOutcome eo = this.model.sample(s, a);
+
+					//a terminal state has no actions, so it cannot precede another state
+					if(!forwardStep && this.model.terminal(eo.op)){
+						continue;
+					}
+					int nid = this.encoder.encode(eo.op);
+					if(f.relax(nid, eo.op, id, a, f.g[id] - eo.r) && other.isGenerated(nid)){
+						double cost = f.g[nid] + other.g[nid];
+						if(cost < best){
+							best = cost;
+							meet = nid;
+						}
+					}
+				}
+			}
+		}
+		return meet;
+	}
+
+	/**
+	 * Puts the action taken from each state on the backward search's path from a state to the goal state into the
+	 * internal policy, finding for each step an action that undoes the move the backward search made.
+	 * @param id the id of the first state of the path
+	 */
+	protected void encodeBackwardPath(int id){
+		Frontier b = this.backward;
+		for(int child = id, parent = b.parents[id]; parent != -1; child = parent, parent = b.parents[parent]){
+			State s = b.states[child];
+			Action step = null;
+			for(ActionType at : this.actionTypes){
+				for(Action a : at.allApplicableActions(s)){
+					if(this.encoder.encode(this.model.sample(s, a).op) == parent){
+						step = a;
+						break;
+					}
+				}
+				if(step != null){
+					break;
+				}
+			}
+			if(step == null){
+				throw new RuntimeException("Could not find an action that reverses a transition into " + b.states[parent]
+						+ "; bidirectional search requires reversible transitions.");
+			}
+			this.internalPolicy.put(this.hashingFactory.hashState(s), step);
+		}
+	}
+
+}
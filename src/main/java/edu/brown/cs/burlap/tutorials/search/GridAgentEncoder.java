@@ -0,0 +1,31 @@
+package edu.brown.cs.burlap.tutorials.search;
+
+import burlap.domain.singleagent.gridworld.state.GridAgent;
+import burlap.domain.singleagent.gridworld.state.GridWorldState;
+import burlap.mdp.core.state.State;
+
+/**
+ * A {@link StateEncoder} for {@link GridWorldState}s that encodes only the agent's cell, as x * height + y. This is
+ * a perfect hash for grid worlds in which only the agent moves, which is true of BURLAP's grid world, and needs no
+ * hashing or lookup at all.
+ */
+public class GridAgentEncoder implements StateEncoder {
+
+	protected int height;
+
+
+	/**
+	 * Initializes.
+	 * @param height the height of the grid; agent y coordinates must be in [0, height)
+	 */
+	public GridAgentEncoder(int height) {
+		this.height = height;
+	}
+
+	@Override
+	public int encode(State s) {
+		GridAgent a = ((GridWorldState)s).agent;
+		return a.x * this.height + a.y;
+	}
+
+}
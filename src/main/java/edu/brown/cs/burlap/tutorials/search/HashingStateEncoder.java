@@ -0,0 +1,35 @@
+package edu.brown.cs.burlap.tutorials.search;
+
+import burlap.mdp.core.state.State;
+import burlap.statehashing.HashableStateFactory;
+import edu.brown.cs.burlap.tutorials.tabular.StateIndex;
+
+/**
+ * A {@link StateEncoder} for any domain, which hashes states with a {@link HashableStateFactory} and hands out ids
+ * in the order states are first seen, using a {@link StateIndex}. It is slower than a domain specific encoder and
+ * keeps every state it has seen, but ids are always dense.
+ */
+public class HashingStateEncoder implements StateEncoder {
+
+	protected HashableStateFactory hashingFactory;
+	protected StateIndex index = new StateIndex();
+
+
+	public HashingStateEncoder(HashableStateFactory hashingFactory) {
+		this.hashingFactory = hashingFactory;
+	}
+
+	@Override
+	public int encode(State s) {
+		return this.index.add(this.hashingFactory.hashState(s));
+	}
+
+	/**
+	 * Forgets all states, so that ids start at 0 again. Ids are then reused for other states, so only clear between
+	 * searches.
+	 */
+	public void clear(){
+		this.index.clear();
+	}
+
+}
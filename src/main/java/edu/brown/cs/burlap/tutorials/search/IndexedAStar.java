@@ -0,0 +1,204 @@
+package edu.brown.cs.burlap.tutorials.search;
+
+import burlap.behavior.singleagent.planning.deterministic.DeterministicPlanner;
+import burlap.behavior.singleagent.planning.deterministic.SDPlannerPolicy;
+import burlap.behavior.singleagent.planning.deterministic.informed.Heuristic;
+import burlap.debugtools.DPrint;
+import burlap.mdp.auxiliary.stateconditiontest.StateConditionTest;
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.action.ActionType;
+import burlap.mdp.core.state.State;
+import burlap.mdp.singleagent.SADomain;
+import burlap.mdp.singleagent.environment.EnvironmentOutcome;
+import burlap.statehashing.HashableStateFactory;
+import edu.brown.cs.burlap.tutorials.tabular.IndexedHeap;
+
+import java.util.Arrays;
+
+/**
+ * An A* planner for deterministic domains that keeps all of its search data in primitive arrays indexed by int state
+ * ids from a {@link StateEncoder}. Where BURLAP's {@link burlap.behavior.singleagent.planning.deterministic.informed.astar.AStar}
+ * allocates a search node and hashes a state for every generated successor, this planner only encodes the successor,
+ * keeps the open list in an {@link IndexedHeap} whose decrease-key updates an entry in place, and records parents,
+ * path costs and the set of generated states in int and double arrays. The arrays are kept between searches and each search is
+ * stamped with a new number, so starting a search does not clear them.
+ * <p>
+ * As with BURLAP's A*, rewards are the negated edge costs and so must be non-positive, and the {@link Heuristic}
+ * returns an optimistic (non-positive) estimate of the reward to the goal. If the heuristic is admissible but not
+ * consistent, expanded states are reopened when a cheaper path to them is found. The resulting plan is stored in the
+ * planner's internal policy, so the returned {@link SDPlannerPolicy} works as for other deterministic planners, and
+ * as with them a {@link PlanningFailedException} is thrown if no goal is reachable.
+ */
+public class IndexedAStar extends DeterministicPlanner {
+
+	/**
+	 * The per-state data of one search direction: the open list and, for every state id generated by the current
+	 * search, its path cost, heuristic cost, parent and state.
+	 */
+	protected static class Frontier {
+
+		final Heuristic heuristic;
+		final IndexedHeap open = new IndexedHeap();
+
+		/**
+		 * The number of the current search; an id has been generated in this search only if its entry in
+		 * {@link #generated} equals it.
+		 */
+		int search;
+		int [] generated = new int[0];
+
+		double [] g = new double[0];
+		double [] h = new double[0];
+		int [] parents = new int[0];
+		Action [] parentActions = new Action[0];
+		State [] states = new State[0];
+
+		int root;
+		int numExpanded;
+
+		Frontier(Heuristic heuristic) {
+			this.heuristic = heuristic;
+		}
+
+		void reset(){
+			this.search++;
+			this.open.clear();
+			this.numExpanded = 0;
+		}
+
+		boolean isGenerated(int id){
+			return id < this.generated.length && this.generated[id] == this.search;
+		}
+
+		void start(int id, State s){
+			this.root = id;
+			this.relax(id, s, -1, null, 0.);
+		}
+
+		/**
+		 * Records a path of the given cost to a state if the state is new to this search or the path is cheaper than
+		 * its current one, and puts the state in the open list, which reopens it if it was already expanded.
+		 * @return true if the path was recorded
+		 */
+		boolean relax(int id, State s, int parent, Action a, double cost){
+			if(!this.isGenerated(id)){
+				this.ensureCapacity(id + 1);
+				this.generated[id] = this.search;
+				this.h[id] = -this.heuristic.h(s);
+			}
+			else if(cost >= this.g[id]){
+				return false;
+			}
+			this.g[id] = cost;
+			this.parents[id] = parent;
+			this.parentActions[id] = a;
+			this.states[id] = s;
+			this.open.update(id, cost + this.h[id]);
+			return true;
+		}
+
+		int poll(){
+			int id = this.open.poll();
+			this.numExpanded++;
+			return id;
+		}
+
+		void ensureCapacity(int n){
+			if(n <= this.generated.length){
+				return;
+			}
+			int len = Math.max(n, Math.max(16, this.generated.length * 2));
+			this.generated = Arrays.copyOf(this.generated, len);
+			this.g = Arrays.copyOf(this.g, len);
+			this.h = Arrays.copyOf(this.h, len);
+			this.parents = Arrays.copyOf(this.parents, len);
+			this.parentActions = Arrays.copyOf(this.parentActions, len);
+			this.states = Arrays.copyOf(this.states, len);
+		}
+
+	}
+
+
+	protected StateEncoder encoder;
+	protected Frontier forward;
+
+
+	/**
+	 * Initializes.
+	 * @param domain the domain in which to plan
+	 * @param gc the goal condition
+	 * @param hashingFactory the hashing factory used for the policy of the found plan
+	 * @param heuristic the heuristic estimate of the reward to the goal
+	 * @param encoder the encoder of states to ids
+	 */
+	public IndexedAStar(SADomain domain, StateConditionTest gc, HashableStateFactory hashingFactory,
+						Heuristic heuristic, StateEncoder encoder) {
+		this.deterministicPlannerInit(domain, gc, hashingFactory);
+		this.encoder = encoder;
+		this.forward = new Frontier(heuristic);
+	}
+
+	@Override
+	public SDPlannerPolicy planFromState(State initialState) {
+		if(this.internalPolicy.containsKey(this.hashingFactory.hashState(initialState))){
+			return new SDPlannerPolicy(this);
+		}
+
+		int goal = this.search(initialState);
+		DPrint.cl(this.debugCode, "Num Expanded: " + this.forward.numExpanded);
+		if(goal == -1){
+			throw new PlanningFailedException();
+		}
+		this.encodePath(this.forward, goal);
+
+		return new SDPlannerPolicy(this);
+	}
+
+	/**
+	 * Returns the number of states expanded by the last search.
+	 * @return the number of states expanded by the last search
+	 */
+	public int getNumExpanded(){
+		return this.forward.numExpanded;
+	}
+
+	/**
+	 * Searches from a state and returns the id of the goal state found, or -1 if no goal is reachable.
+	 * @param initialState the state from which to search
+	 * @return the id of the goal state, or -1
+	 */
+	protected int search(State initialState){
+		Frontier f = this.forward;
+		f.reset();
+		f.start(this.encoder.encode(initialState), initialState);
+		while(!f.open.isEmpty()){
+			int id = f.poll();
+			State s = f.states[id];
+			if(this.gc.satisfies(s)){
+				return id;
+			}
+			if(this.model.terminal(s)){
+				continue;
+			}
+			for(ActionType at : this.actionTypes){
+				for(Action a : at.allApplicableActions(s)){
+					EnvironmentOutcome eo = this.model.sample(s, a);
+					f.relax(this.encoder.encode(eo.op), eo.op, id, a, f.g[id] - eo.r);
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Puts the action taken from each state on the path from the frontier's root to a state into the internal policy.
+	 * @param f the frontier
+	 * @param id the id of the last state of the path
+	 */
+	protected void encodePath(Frontier f, int id){
+		for(int child = id, parent = f.parents[id]; parent != -1; child = parent, parent = f.parents[parent]){
+			this.internalPolicy.put(this.hashingFactory.hashState(f.states[parent]), f.parentActions[child]);
+		}
+	}
+
+}
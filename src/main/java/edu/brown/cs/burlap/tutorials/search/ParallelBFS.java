@@ -0,0 +1,268 @@
+package edu.brown.cs.burlap.tutorials.search;
+
+import burlap.behavior.singleagent.planning.deterministic.DeterministicPlanner;
+import burlap.behavior.singleagent.planning.deterministic.SDPlannerPolicy;
+import burlap.behavior.singleagent.planning.deterministic.SearchNode;
+import burlap.debugtools.DPrint;
+import burlap.mdp.auxiliary.stateconditiontest.StateConditionTest;
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.action.ActionUtils;
+import burlap.mdp.core.state.State;
+import burlap.mdp.singleagent.SADomain;
+import burlap.statehashing.HashableState;
+import burlap.statehashing.HashableStateFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A breadth-first search planner that expands each level of the search in parallel in a fork/join pool, and finds
+ * exactly the plan that BURLAP's {@link burlap.behavior.singleagent.planning.deterministic.uninformed.bfs.BFS} finds,
+ * so that it can be used in its place.
+ * <p>
+ * Sequential BFS keeps the first path it generates to each state: a state's parent is the earliest state in queue
+ * order that generates it, by the earliest applicable action. Here every successor generated while expanding a level
+ * claims its state in a concurrent visited map with its (frontier index, action index) pair, and the smallest claim
+ * wins, so the winner does not depend on how the level was scheduled. The next level is then made of the winning
+ * successors in claim order, which is the order sequential BFS queues them. Goals are tested in frontier order before
+ * a level is expanded, so the first goal found is the same one.
+ * <p>
+ * The domain's model, action types and hashing factory must be safe to use from several threads, as BURLAP's grid
+ * world and simple hashing factory are. The states themselves are hashed and compared by several threads at once as
+ * keys of the visited map, so any hash or index they compute lazily must be published safely. The tutorials'
+ * {@link edu.brown.cs.burlap.tutorials.domain.oo.PersistentOOState}, including
+ * {@link edu.brown.cs.burlap.tutorials.domain.oo.ExGridOOState} with its lazy location index, and
+ * {@link edu.brown.cs.burlap.tutorials.domain.oo.ColumnarOOState}, with its lazy canonical rows, hash and name lookup,
+ * do so. A state is only copied or modified by the thread expanding it; none of these states may be modified by
+ * several threads at once.
+ */
+public class ParallelBFS extends DeterministicPlanner {
+
+	/**
+	 * The visited map value of a state whose level has been completed, which is smaller than every claim.
+	 */
+	protected static final long SETTLED = -1L;
+
+	protected static final int FIND_GOAL = 0;
+	protected static final int EXPAND = 1;
+	protected static final int COLLECT = 2;
+
+	protected ForkJoinPool pool;
+	protected int chunkSize = 64;
+
+	protected ConcurrentHashMap<HashableState, Long> visited;
+	protected SearchNode [] frontier;
+	protected HashableState [][] successors;
+	protected Action [][] successorActions;
+	protected SearchNode [][] children;
+
+	protected int numExpanded;
+
+
+	/**
+	 * Initializes.
+	 * @param domain the domain in which to plan
+	 * @param gc the goal condition
+	 * @param hashingFactory the hashing factory used for the visited set and the policy
+	 * @param pool the pool in which to expand levels
+	 */
+	public ParallelBFS(SADomain domain, StateConditionTest gc, HashableStateFactory hashingFactory, ForkJoinPool pool) {
+		this.deterministicPlannerInit(domain, gc, hashingFactory);
+		this.pool = pool;
+	}
+
+	/**
+	 * Sets the max number of frontier states that a single task processes without splitting further.
+	 * @param chunkSize the chunk size
+	 */
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = Math.max(1, chunkSize);
+	}
+
+	@Override
+	public SDPlannerPolicy planFromState(State initialState) {
+		HashableState sih = this.stateHash(initialState);
+		if(this.internalPolicy.containsKey(sih)){
+			return new SDPlannerPolicy(this);
+		}
+
+		this.visited = new ConcurrentHashMap<HashableState, Long>();
+		this.visited.put(sih, SETTLED);
+		this.frontier = new SearchNode[]{new SearchNode(sih)};
+		this.numExpanded = 0;
+
+		SearchNode goal = null;
+		while(this.frontier.length > 0){
+			int n = this.frontier.length;
+
+			LevelTask find = this.runLevel(FIND_GOAL);
+			if(find.firstGoal < n){
+				this.numExpanded += find.firstGoal + 1;
+				goal = this.frontier[find.firstGoal];
+				break;
+			}
+			this.numExpanded += n;
+
+			this.successors = new HashableState[n][];
+			this.successorActions = new Action[n][];
+			this.children = new SearchNode[n][];
+			this.runLevel(EXPAND);
+			this.runLevel(COLLECT);
+
+			int numChildren = 0;
+			for(SearchNode [] c : this.children){
+				numChildren += c.length;
+			}
+			SearchNode [] next = new SearchNode[numChildren];
+			int k = 0;
+			for(SearchNode [] c : this.children){
+				System.arraycopy(c, 0, next, k, c.length);
+				k += c.length;
+			}
+			this.frontier = next;
+		}
+
+		//release the search data; the plan is kept in the policy
+		this.visited = null;
+		this.frontier = null;
+		this.successors = null;
+		this.successorActions = null;
+		this.children = null;
+
+		DPrint.cl(this.debugCode, "Num Expanded: " + this.numExpanded);
+		if(goal == null){
+			throw new PlanningFailedException();
+		}
+		this.encodePlanIntoPolicy(goal);
+
+		return new SDPlannerPolicy(this);
+	}
+
+	/**
+	 * Returns the number of states expanded by the last search, counted as sequential BFS counts them.
+	 * @return the number of states expanded by the last search
+	 */
+	public int getNumExpanded(){
+		return this.numExpanded;
+	}
+
+	protected LevelTask runLevel(int phase){
+		LevelTask task = new LevelTask(phase, 0, this.frontier.length);
+		this.pool.invoke(task);
+		return task;
+	}
+
+	/**
+	 * Generates the successors of a frontier state and claims each of their states in the visited map.
+	 * @param i the index of the state in the frontier
+	 */
+	protected void expand(int i){
+		State s = this.frontier[i].s.s();
+		if(this.model.terminal(s)){
+			this.successors[i] = new HashableState[0];
+			this.successorActions[i] = new Action[0];
+			return;
+		}
+		List<Action> actions = ActionUtils.allApplicableActionsForTypes(this.actionTypes, s);
+		HashableState [] succ = new HashableState[actions.size()];
+		Action [] acts = new Action[actions.size()];
+		for(int j = 0; j < succ.length; j++){
+			Action a = actions.get(j);
+			HashableState hs = this.stateHash(this.model.sample(s, a).op);
+			succ[j] = hs;
+			acts[j] = a;
+			this.claim(hs, ((long)i << 32) | j);
+		}
+		this.successors[i] = succ;
+		this.successorActions[i] = acts;
+	}
+
+	/**
+	 * Sets the visited map value of a state to a claim if the state is unvisited or has a larger claim.
+	 */
+	protected void claim(HashableState hs, long claim){
+		Long c = claim;
+		Long old = this.visited.putIfAbsent(hs, c);
+		while(old != null && old > claim){
+			if(this.visited.replace(hs, old, c)){
+				return;
+			}
+			old = this.visited.putIfAbsent(hs, c);
+		}
+	}
+
+	/**
+	 * Makes search nodes for the successors of a frontier state whose claims won, and settles their states.
+	 * @param i the index of the state in the frontier
+	 */
+	protected void collect(int i){
+		HashableState [] succ = this.successors[i];
+		List<SearchNode> kept = new ArrayList<SearchNode>(succ.length);
+		for(int j = 0; j < succ.length; j++){
+			Long c = this.visited.get(succ[j]);
+			if(c != null && c == (((long)i << 32) | j)){
+				this.visited.put(succ[j], SETTLED);
+				kept.add(new SearchNode(succ[j], this.successorActions[i][j], this.frontier[i]));
+			}
+		}
+		this.children[i] = kept.toArray(new SearchNode[kept.size()]);
+	}
+
+
+	/**
+	 * Runs one phase of a level over a contiguous range of frontier indices, recursively splitting the range in half
+	 * until it is no larger than the chunk size.
+	 */
+	protected class LevelTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		protected int phase;
+		protected int from;
+		protected int to;
+
+		/**
+		 * For {@link #FIND_GOAL}, the smallest frontier index in the range of a goal state, or the end of the frontier
+		 * if there is none.
+		 */
+		protected int firstGoal;
+
+		public LevelTask(int phase, int from, int to) {
+			this.phase = phase;
+			this.from = from;
+			this.to = to;
+			this.firstGoal = frontier.length;
+		}
+
+		@Override
+		protected void compute() {
+			if(this.to - this.from > chunkSize){
+				int mid = (this.from + this.to) >>> 1;
+				LevelTask left = new LevelTask(this.phase, this.from, mid);
+				LevelTask right = new LevelTask(this.phase, mid, this.to);
+				invokeAll(left, right);
+				this.firstGoal = Math.min(left.firstGoal, right.firstGoal);
+				return;
+			}
+			for(int i = this.from; i < this.to; i++){
+				if(this.phase == FIND_GOAL){
+					if(gc.satisfies(frontier[i].s.s())){
+						this.firstGoal = i;
+						return;
+					}
+				}
+				else if(this.phase == EXPAND){
+					expand(i);
+				}
+				else{
+					collect(i);
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,20 @@
+package edu.brown.cs.burlap.tutorials.search;
+
+import burlap.mdp.core.state.State;
+
+/**
+ * Maps states to small non-negative int ids, so that a search can keep its per-state data in primitive arrays indexed
+ * by id rather than in maps keyed by {@link burlap.statehashing.HashableState}s. The encoding must be a perfect hash
+ * over the states a search can reach: equal states must get the same id and different states different ids. Ids
+ * should be dense, since searches allocate arrays as long as the largest id.
+ */
+public interface StateEncoder {
+
+	/**
+	 * Returns the id of a state.
+	 * @param s the state
+	 * @return the id of the state
+	 */
+	int encode(State s);
+
+}
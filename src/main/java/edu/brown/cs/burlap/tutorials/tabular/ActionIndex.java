@@ -0,0 +1,49 @@
+package edu.brown.cs.burlap.tutorials.tabular;
+
+import burlap.mdp.core.action.Action;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns each distinct {@link Action} a small dense int index the first time it is seen, so that tabular learners
+ * can store and find per-action values by int comparison instead of {@link Action#equals(Object)}. A single index
+ * is typically shared by everything that learns in the same domain.
+ */
+public class ActionIndex {
+
+	protected Map<Action, Integer> indices = new HashMap<Action, Integer>();
+	protected List<Action> actions = new ArrayList<Action>();
+
+
+	/**
+	 * Returns the index of the action, assigning it the next free index if it has not been seen before.
+	 * @param a the action
+	 * @return the index of the action
+	 */
+	public int index(Action a){
+		Integer i = this.indices.get(a);
+		if(i == null){
+			i = this.actions.size();
+			this.indices.put(a, i);
+			this.actions.add(a);
+		}
+		return i;
+	}
+
+	/**
+	 * Returns the action with the given index.
+	 * @param index the index
+	 * @return the action with the given index
+	 */
+	public Action action(int index){
+		return this.actions.get(index);
+	}
+
+	public int size(){
+		return this.actions.size();
+	}
+
+}
@@ -0,0 +1,108 @@
+package edu.brown.cs.burlap.tutorials.tabular;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A fork/join task that performs one Bellman sweep over a contiguous range of state ids of a {@link TransitionTable},
+ * recursively splitting the range in half until it is no larger than the chunk size.
+ * <p>
+ * If the source and destination value arrays are different, the sweep is synchronous (Jacobi): every backup reads
+ * only the previous sweep's values, so the result is bit-for-bit identical regardless of the number of threads or
+ * how the chunks are scheduled. If they are the same array, the sweep is asynchronous (Gauss-Seidel): backups read
+ * whatever values other threads have most recently written, which usually converges in fewer sweeps but is not
+ * reproducible. The asynchronous mode relies on double array writes not being torn, which holds on 64-bit JVMs.
+ */
+public class BellmanSweep extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	protected TransitionTable table;
+	protected double [] src;
+	protected double [] dst;
+	protected double gamma;
+	protected int from;
+	protected int to;
+	protected int chunkSize;
+
+	/**
+	 * The max absolute change in value over the swept range, set after the task completes.
+	 */
+	protected double maxResidual;
+
+
+	public BellmanSweep(TransitionTable table, double [] src, double [] dst, double gamma, int from, int to, int chunkSize) {
+		this.table = table;
+		this.src = src;
+		this.dst = dst;
+		this.gamma = gamma;
+		this.from = from;
+		this.to = to;
+		this.chunkSize = Math.max(1, chunkSize);
+	}
+
+
+	/**
+	 * Runs a sweep over the state ids [from, to) in the given pool and returns the max absolute change in value.
+	 * @param pool the fork/join pool in which to run the sweep
+	 * @param table the compiled transition table
+	 * @param src the values read by backups
+	 * @param dst the array into which backed up values are written; may be the same as src
+	 * @param gamma the discount factor
+	 * @param from the first state id to sweep (inclusive)
+	 * @param to the last state id to sweep (exclusive)
+	 * @param chunkSize the max number of states a single task sweeps without splitting further
+	 * @return the max absolute change in value over the swept states
+	 */
+	public static double sweep(ForkJoinPool pool, TransitionTable table, double [] src, double [] dst, double gamma,
+							   int from, int to, int chunkSize){
+		BellmanSweep task = new BellmanSweep(table, src, dst, gamma, from, to, chunkSize);
+		pool.invoke(task);
+		return task.maxResidual;
+	}
+
+	/**
+	 * Runs a sweep over the state ids [from, to) in the calling thread and returns the max absolute change in value.
+	 * @param table the compiled transition table
+	 * @param src the values read by backups
+	 * @param dst the array into which backed up values are written; may be the same as src
+	 * @param gamma the discount factor
+	 * @param from the first state id to sweep (inclusive)
+	 * @param to the last state id to sweep (exclusive)
+	 * @return the max absolute change in value over the swept states
+	 */
+	public static double sweep(TransitionTable table, double [] src, double [] dst, double gamma, int from, int to){
+		double maxResidual = 0.;
+		for(int id = from; id < to; id++){
+			double v = table.backup(id, src, gamma);
+			double residual = Math.abs(v - src[id]);
+			if(residual > maxResidual){
+				maxResidual = residual;
+			}
+			dst[id] = v;
+		}
+		return maxResidual;
+	}
+
+	public double getMaxResidual() {
+		return maxResidual;
+	}
+
+	@Override
+	protected void compute() {
+
+		if(this.to - this.from <= this.chunkSize){
+			this.maxResidual = sweep(this.table, this.src, this.dst, this.gamma, this.from, this.to);
+			return;
+		}
+
+		int mid = (this.from + this.to) >>> 1;
+		BellmanSweep left = new BellmanSweep(this.table, this.src, this.dst, this.gamma, this.from, mid, this.chunkSize);
+		BellmanSweep right = new BellmanSweep(this.table, this.src, this.dst, this.gamma, mid, this.to, this.chunkSize);
+		invokeAll(left, right);
+
+		this.maxResidual = Math.max(left.maxResidual, right.maxResidual);
+
+	}
+
+}
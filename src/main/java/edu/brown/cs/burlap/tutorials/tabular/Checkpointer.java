@@ -0,0 +1,191 @@
+package edu.brown.cs.burlap.tutorials.tabular;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Periodically checkpoints a learner to a file from a background thread. Every episodeInterval episodes, the
+ * learner's {@link Source} serializes a snapshot into memory on the learning thread, which is only as expensive as
+ * copying the table, and a background thread writes the snapshot to a temporary file, syncs it to disk and renames
+ * it over the checkpoint file. A crash during a write therefore leaves the previous checkpoint intact. If the
+ * previous write is still in progress when the next checkpoint is due, that checkpoint is skipped rather than
+ * queued.
+ */
+public class Checkpointer {
+
+	/**
+	 * Something that can write its state to a checkpoint.
+	 */
+	public interface Source {
+		/**
+		 * Writes a checkpoint.
+		 * @param out the output to write to
+		 * @throws IOException if the output cannot be written
+		 */
+		void writeCheckpoint(DataOutput out) throws IOException;
+	}
+
+
+	protected Source source;
+	protected File file;
+	protected int episodeInterval;
+	protected int episodes;
+
+	protected ExecutorService writer;
+	protected Future<Void> pendingWrite;
+	protected int lastSize = 1024;
+
+	protected int numWritten;
+	protected int numSkipped;
+	protected IOException lastError;
+
+
+	/**
+	 * Initializes.
+	 * @param source the learner to checkpoint
+	 * @param file the checkpoint file
+	 * @param episodeInterval the number of episodes between checkpoints, which must be at least 1
+	 */
+	public Checkpointer(Source source, File file, int episodeInterval) {
+		if(episodeInterval < 1){
+			throw new IllegalArgumentException("Checkpoints must be at least 1 episode apart, but the interval is " + episodeInterval + ".");
+		}
+		this.source = source;
+		this.file = file;
+		this.episodeInterval = episodeInterval;
+		this.writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "checkpoint-writer");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Tells the checkpointer an episode has ended, and checkpoints if one is due.
+	 */
+	public void episodeEnded(){
+		this.episodes++;
+		if(this.episodes % this.episodeInterval == 0){
+			this.checkpoint();
+		}
+	}
+
+	/**
+	 * Snapshots the source and starts writing it in the background, unless the previous write has not finished.
+	 * @return true if a write was started; false if it was skipped
+	 */
+	public boolean checkpoint(){
+		if(this.pendingWrite != null){
+			if(!this.pendingWrite.isDone()){
+				this.numSkipped++;
+				return false;
+			}
+			this.collect();
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(this.lastSize);
+		try{
+			this.source.writeCheckpoint(new DataOutputStream(bytes));
+		}
+		catch(IOException e){
+			//writing to memory cannot fail
+			throw new RuntimeException(e);
+		}
+		final byte [] snapshot = bytes.toByteArray();
+		this.lastSize = snapshot.length;
+
+		this.pendingWrite = this.writer.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				writeAtomically(snapshot);
+				return null;
+			}
+		});
+
+		return true;
+	}
+
+	/**
+	 * Waits for any write in progress, then stops the background thread.
+	 */
+	public void close(){
+		if(this.pendingWrite != null){
+			this.collect();
+		}
+		this.writer.shutdown();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Returns the number of checkpoints written so far, not counting one still being written.
+	 * @return the number of checkpoints written
+	 */
+	public int getNumWritten() {
+		return numWritten;
+	}
+
+	/**
+	 * Returns the number of due checkpoints skipped because the previous write had not finished.
+	 * @return the number of skipped checkpoints
+	 */
+	public int getNumSkipped() {
+		return numSkipped;
+	}
+
+	/**
+	 * Returns the error of the last failed write, or null if no write has failed.
+	 * @return the last write error, or null
+	 */
+	public IOException getLastError() {
+		return lastError;
+	}
+
+	/**
+	 * Waits for the pending write and records its outcome.
+	 */
+	protected void collect(){
+		try{
+			this.pendingWrite.get();
+			this.numWritten++;
+		}
+		catch(ExecutionException e){
+			this.lastError = e.getCause() instanceof IOException ? (IOException)e.getCause() : new IOException(e.getCause());
+		}
+		catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+		this.pendingWrite = null;
+	}
+
+	protected void writeAtomically(byte [] snapshot) throws IOException {
+		File tmp = new File(this.file.getPath() + ".tmp");
+		FileOutputStream out = new FileOutputStream(tmp);
+		try{
+			out.write(snapshot);
+			out.getFD().sync();
+		}
+		finally{
+			out.close();
+		}
+		Files.move(tmp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+}
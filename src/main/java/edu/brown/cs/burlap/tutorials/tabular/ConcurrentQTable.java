@@ -0,0 +1,129 @@
+package edu.brown.cs.burlap.tutorials.tabular;
+
+import burlap.mdp.core.action.Action;
+import burlap.statehashing.HashableState;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A tabular Q-function that many threads can read and update at once without locks. Each state's row stores its
+ * applicable actions and their Q-values as the raw long bits of doubles in an {@link AtomicLongArray}, so an
+ * individual Q-value can be updated with a compare-and-set loop. Rows are created with
+ * {@link ConcurrentMap#putIfAbsent(Object, Object)}, so two threads that discover a state at the same time agree on
+ * one row.
+ */
+public class ConcurrentQTable {
+
+	protected ConcurrentMap<HashableState, Row> rows;
+
+
+	public ConcurrentQTable(){
+		this.rows = new ConcurrentHashMap<HashableState, Row>();
+	}
+
+	public ConcurrentQTable(int expectedStates, int concurrencyLevel){
+		this.rows = new ConcurrentHashMap<HashableState, Row>(expectedStates, 0.75f, concurrencyLevel);
+	}
+
+	/**
+	 * Returns the row of the hashed state, or null if it has no row.
+	 * @param hs the hashed state
+	 * @return the row, or null
+	 */
+	public Row row(HashableState hs){
+		return this.rows.get(hs);
+	}
+
+	/**
+	 * Adds a row for the hashed state unless another thread already added one, and returns the row in the table.
+	 * @param hs the hashed state
+	 * @param row the row to add
+	 * @return the row in the table for the state
+	 */
+	public Row addRow(HashableState hs, Row row){
+		Row existing = this.rows.putIfAbsent(hs, row);
+		return existing != null ? existing : row;
+	}
+
+	public int numRows(){
+		return this.rows.size();
+	}
+
+	public void clear(){
+		this.rows.clear();
+	}
+
+
+	/**
+	 * The actions applicable in a state and their atomically updatable Q-values.
+	 */
+	public static class Row {
+
+		protected final Action [] actions;
+		protected final AtomicLongArray qs;
+
+		public Row(Action [] actions, double [] qs) {
+			this.actions = actions;
+			this.qs = new AtomicLongArray(qs.length);
+			for(int i = 0; i < qs.length; i++){
+				this.qs.set(i, Double.doubleToRawLongBits(qs[i]));
+			}
+		}
+
+		public int numActions(){
+			return this.actions.length;
+		}
+
+		public Action action(int i){
+			return this.actions[i];
+		}
+
+		/**
+		 * Returns the position of the action in this row, or -1 if it is not applicable.
+		 * @param a the action
+		 * @return the position of the action, or -1
+		 */
+		public int position(Action a){
+			for(int i = 0; i < this.actions.length; i++){
+				if(this.actions[i].equals(a)){
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		public double q(int i){
+			return Double.longBitsToDouble(this.qs.get(i));
+		}
+
+		/**
+		 * Returns the max Q-value of this row, or 0 if it has no actions.
+		 * @return the max Q-value
+		 */
+		public double maxQ(){
+			if(this.actions.length == 0){
+				return 0.;
+			}
+			double max = this.q(0);
+			for(int i = 1; i < this.actions.length; i++){
+				max = Math.max(max, this.q(i));
+			}
+			return max;
+		}
+
+		/**
+		 * Sets the Q-value at position i to a new value if it is still the expected value, comparing their bits.
+		 * @param i the position of the action
+		 * @param expect the expected current Q-value, as read by {@link #q(int)}
+		 * @param update the new Q-value
+		 * @return true if the value was set, false if another thread changed it first
+		 */
+		public boolean compareAndSet(int i, double expect, double update){
+			return this.qs.compareAndSet(i, Double.doubleToRawLongBits(expect), Double.doubleToRawLongBits(update));
+		}
+
+	}
+
+}
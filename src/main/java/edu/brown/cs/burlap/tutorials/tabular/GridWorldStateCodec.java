@@ -0,0 +1,51 @@
+package edu.brown.cs.burlap.tutorials.tabular;
+
+import burlap.domain.singleagent.gridworld.state.GridAgent;
+import burlap.domain.singleagent.gridworld.state.GridLocation;
+import burlap.domain.singleagent.gridworld.state.GridWorldState;
+import burlap.mdp.core.state.State;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link StateCodec} for {@link GridWorldState}s: the agent's position and name, then the position, type and name
+ * of each location.
+ */
+public class GridWorldStateCodec implements StateCodec {
+
+	@Override
+	public void write(State s, DataOutput out) throws IOException {
+		GridWorldState gs = (GridWorldState)s;
+		out.writeInt(gs.agent.x);
+		out.writeInt(gs.agent.y);
+		QTableCheckpoint.writeString(out, gs.agent.name());
+		out.writeInt(gs.locations.size());
+		for(GridLocation l : gs.locations){
+			out.writeInt(l.x);
+			out.writeInt(l.y);
+			out.writeInt(l.type);
+			QTableCheckpoint.writeString(out, l.name());
+		}
+	}
+
+	@Override
+	public State read(ByteBuffer in) {
+		int ax = in.getInt();
+		int ay = in.getInt();
+		GridAgent agent = new GridAgent(ax, ay, QTableCheckpoint.readString(in));
+		int n = in.getInt();
+		List<GridLocation> locations = new ArrayList<GridLocation>(n);
+		for(int i = 0; i < n; i++){
+			int x = in.getInt();
+			int y = in.getInt();
+			int type = in.getInt();
+			locations.add(new GridLocation(x, y, type, QTableCheckpoint.readString(in)));
+		}
+		return new GridWorldState(agent, locations);
+	}
+
+}
@@ -0,0 +1,195 @@
+package edu.brown.cs.burlap.tutorials.tabular;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of int ids (e.g., state ids from a {@link StateIndex}) keyed by double priorities. The heap
+ * tracks the position of every id, so an id's key can be changed in place in O(log n) instead of inserting a
+ * duplicate entry, and membership tests are O(1). For max-heap behavior, use negated keys.
+ */
+public class IndexedHeap {
+
+	protected int [] heap;
+	protected double [] keys;
+
+	/**
+	 * The position of each id in {@link #heap}, or -1 if the id is not in the heap.
+	 */
+	protected int [] positions;
+	protected int size;
+
+
+	public IndexedHeap(){
+		this(16);
+	}
+
+	public IndexedHeap(int capacity){
+		capacity = Math.max(capacity, 1);
+		this.heap = new int[capacity];
+		this.keys = new double[capacity];
+		this.positions = new int[capacity];
+		Arrays.fill(this.positions, -1);
+	}
+
+	public int size(){
+		return this.size;
+	}
+
+	public boolean isEmpty(){
+		return this.size == 0;
+	}
+
+	public boolean contains(int id){
+		return id < this.positions.length && this.positions[id] != -1;
+	}
+
+	/**
+	 * Returns the key of the given id. The id must be in the heap.
+	 * @param id the id
+	 * @return the key of the id
+	 */
+	public double key(int id){
+		return this.keys[id];
+	}
+
+	/**
+	 * Returns the id with the smallest key without removing it. The heap must not be empty.
+	 * @return the id with the smallest key
+	 */
+	public int peek(){
+		return this.heap[0];
+	}
+
+	/**
+	 * Returns the smallest key in the heap. The heap must not be empty.
+	 * @return the smallest key in the heap
+	 */
+	public double peekKey(){
+		return this.keys[this.heap[0]];
+	}
+
+	/**
+	 * Inserts the id with the given key, or changes its key if it is already in the heap.
+	 * @param id the id
+	 * @param key the key
+	 */
+	public void update(int id, double key){
+		if(id >= this.positions.length){
+			this.grow(id + 1);
+		}
+		int pos = this.positions[id];
+		if(pos == -1){
+			if(this.size == this.heap.length){
+				this.heap = Arrays.copyOf(this.heap, this.size * 2);
+			}
+			pos = this.size++;
+			this.heap[pos] = id;
+			this.positions[id] = pos;
+			this.keys[id] = key;
+			this.siftUp(pos);
+			return;
+		}
+
+		double old = this.keys[id];
+		this.keys[id] = key;
+		if(key < old){
+			this.siftUp(pos);
+		}
+		else{
+			this.siftDown(pos);
+		}
+	}
+
+	/**
+	 * Removes and returns the id with the smallest key. The heap must not be empty.
+	 * @return the id with the smallest key
+	 */
+	public int poll(){
+		int id = this.heap[0];
+		this.removeAt(0);
+		return id;
+	}
+
+	/**
+	 * Removes the id from the heap if it is present.
+	 * @param id the id to remove
+	 */
+	public void remove(int id){
+		if(this.contains(id)){
+			this.removeAt(this.positions[id]);
+		}
+	}
+
+	public void clear(){
+		for(int i = 0; i < this.size; i++){
+			this.positions[this.heap[i]] = -1;
+		}
+		this.size = 0;
+	}
+
+
+	protected void removeAt(int pos){
+		int id = this.heap[pos];
+		this.positions[id] = -1;
+		this.size--;
+		if(pos == this.size){
+			return;
+		}
+		int last = this.heap[this.size];
+		this.heap[pos] = last;
+		this.positions[last] = pos;
+		this.siftDown(pos);
+		if(this.heap[pos] == last){
+			this.siftUp(pos);
+		}
+	}
+
+	protected void siftUp(int pos){
+		int id = this.heap[pos];
+		double key = this.keys[id];
+		while(pos > 0){
+			int parent = (pos - 1) >>> 1;
+			int pid = this.heap[parent];
+			if(this.keys[pid] <= key){
+				break;
+			}
+			this.heap[pos] = pid;
+			this.positions[pid] = pos;
+			pos = parent;
+		}
+		this.heap[pos] = id;
+		this.positions[id] = pos;
+	}
+
+	protected void siftDown(int pos){
+		int id = this.heap[pos];
+		double key = this.keys[id];
+		int half = this.size >>> 1;
+		while(pos < half){
+			int child = 2 * pos + 1;
+			int cid = this.heap[child];
+			int right = child + 1;
+			if(right < this.size && this.keys[this.heap[right]] < this.keys[cid]){
+				child = right;
+				cid = this.heap[child];
+			}
+			if(key <= this.keys[cid]){
+				break;
+			}
+			this.heap[pos] = cid;
+			this.positions[cid] = pos;
+			pos = child;
+		}
+		this.heap[pos] = id;
+		this.positions[id] = pos;
+	}
+
+	protected void grow(int minCapacity){
+		int oldLength = this.positions.length;
+		int newLength = Math.max(minCapacity, oldLength * 2);
+		this.positions = Arrays.copyOf(this.positions, newLength);
+		Arrays.fill(this.positions, oldLength, newLength, -1);
+		this.keys = Arrays.copyOf(this.keys, newLength);
+	}
+
+}
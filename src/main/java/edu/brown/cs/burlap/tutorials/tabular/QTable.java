@@ -0,0 +1,342 @@
+package edu.brown.cs.burlap.tutorials.tabular;
+
+import burlap.debugtools.RandomFactory;
+import burlap.statehashing.HashableState;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A tabular Q-function stored as one primitive row per state. A {@link StateIndex} maps each hashed state to a
+ * row id; a row stores the {@link ActionIndex} indices of the actions applicable in the state and a parallel
+ * double array of their Q-values. Reading or updating a Q-value after the row has been found only touches
+ * primitive arrays.
+ * <p>
+ * The table can be bounded to a max number of rows with {@link #setCapacity(int, RowEvictionPolicy)}. When a row
+ * is added to a full table, a few rows are sampled and the one the {@link RowEvictionPolicy} scores lowest is
+ * evicted, and its id is reused for the new row. Because ids are reused, every row also has a generation number
+ * that changes whenever its id is reused, so code holding on to a row id (e.g., a cache or a replay buffer) can
+ * check that it still refers to the same state. One row can be pinned so that it is never evicted.
+ * <p>
+ * The capacity is a soft bound: the pinned row is never evicted, so when it is the only row of a full table, adding
+ * a row has nothing to evict and the table holds capacity + 1 rows. This only happens with a capacity of 1, since a
+ * larger full table always has an unpinned row to evict.
+ */
+public class QTable {
+
+	protected StateIndex index;
+
+	protected int [][] rowActions = new int[16][];
+	protected double [][] rowQs = new double[16][];
+
+	protected int [] rowGenerations = new int[16];
+	protected long [] rowLastAccess = new long[16];
+	protected int [] rowVisits = new int[16];
+	protected long clock;
+
+	protected int maxRows = Integer.MAX_VALUE;
+	protected RowEvictionPolicy evictionPolicy;
+	protected int evictionSamples = 8;
+	protected int pinnedRow = -1;
+	protected Random rand = RandomFactory.getMapped(0);
+
+	protected long hits;
+	protected long misses;
+	protected long evictions;
+
+
+	public QTable(){
+		this.index = new StateIndex();
+	}
+
+	public QTable(int expectedStates){
+		if(expectedStates < 0){
+			throw new IllegalArgumentException("The expected number of states cannot be negative, but it is " + expectedStates + ".");
+		}
+		this.index = new StateIndex(expectedStates);
+		this.ensureRowCapacity(Math.max(expectedStates, 16));
+	}
+
+	/**
+	 * Bounds the number of rows, evicting rows right away if the table already has more. The bound does not evict
+	 * the pinned row, so a capacity of 1 can hold 2 rows; see the class documentation.
+	 * @param maxRows the max number of rows, which must be at least 1
+	 * @param evictionPolicy the policy deciding which rows to evict
+	 */
+	public void setCapacity(int maxRows, RowEvictionPolicy evictionPolicy){
+		if(maxRows < 1){
+			throw new IllegalArgumentException("A Q-table must be able to hold at least 1 row, but the capacity is " + maxRows + ".");
+		}
+		this.maxRows = maxRows;
+		this.evictionPolicy = evictionPolicy;
+		while(this.numRows() > maxRows && this.evict()){
+			//keep evicting
+		}
+	}
+
+	/**
+	 * Sets the number of rows sampled to choose each evicted row. More samples evict rows closer to the lowest
+	 * scored row at a higher cost per eviction.
+	 * @param evictionSamples the number of sampled rows
+	 */
+	public void setEvictionSamples(int evictionSamples) {
+		this.evictionSamples = evictionSamples;
+	}
+
+	/**
+	 * Protects a row from eviction until another row is pinned. If the pinned row is the only row, adding a row goes
+	 * over capacity by one instead of evicting it.
+	 * @param row the row id, or -1 to unpin
+	 */
+	public void pin(int row){
+		this.pinnedRow = row;
+	}
+
+	/**
+	 * Returns the row id of the hashed state, or -1 if it has no row. Finding a row counts as a hit and as an
+	 * access to the row.
+	 * @param hs the hashed state
+	 * @return the row id, or -1 if it has no row
+	 */
+	public int row(HashableState hs){
+		int row = this.index.id(hs);
+		if(row != -1){
+			this.touch(row);
+		}
+		return row;
+	}
+
+	/**
+	 * Records an access to a row that was found without {@link #row(HashableState)}, e.g., through a cache.
+	 * @param row the row id
+	 */
+	public void touch(int row){
+		this.hits++;
+		this.rowLastAccess[row] = ++this.clock;
+		this.rowVisits[row]++;
+	}
+
+	/**
+	 * Adds a row for a hashed state that does not already have one, evicting a row first if the table is full and
+	 * has an unpinned row. Adding a row counts as a miss.
+	 * @param hs the hashed state
+	 * @param actions the action indices of the actions applicable in the state
+	 * @param qs the initial Q-values of each action; the array is stored, not copied
+	 * @return the new row id
+	 */
+	public int addRow(HashableState hs, int [] actions, double [] qs){
+		if(this.numRows() >= this.maxRows){
+			this.evict();
+		}
+		int row = this.index.add(hs);
+		if(row >= this.rowActions.length){
+			this.ensureRowCapacity(row * 2);
+		}
+		this.rowActions[row] = actions;
+		this.rowQs[row] = qs;
+		this.rowLastAccess[row] = ++this.clock;
+		this.rowVisits[row] = 1;
+		this.misses++;
+		return row;
+	}
+
+	/**
+	 * Removes the row of a hashed state.
+	 * @param hs the hashed state
+	 * @return the removed row id, or -1 if the state had no row
+	 */
+	public int removeRow(HashableState hs){
+		int row = this.index.remove(hs);
+		if(row != -1){
+			this.rowActions[row] = null;
+			this.rowQs[row] = null;
+			this.rowGenerations[row]++;
+		}
+		return row;
+	}
+
+	public int numRows(){
+		return this.index.size();
+	}
+
+	/**
+	 * Returns the bound on row ids; every row id is below it, but ids below it may be unused.
+	 * @return the bound on row ids
+	 */
+	public int rowBound(){
+		return this.index.idBound();
+	}
+
+	public HashableState state(int row){
+		return this.index.state(row);
+	}
+
+	/**
+	 * Returns the action indices of a row. The array must not be modified.
+	 * @param row the row id
+	 * @return the action indices of the row
+	 */
+	public int [] actions(int row){
+		return this.rowActions[row];
+	}
+
+	/**
+	 * Returns the Q-values of a row, parallel to {@link #actions(int)}. Updating an entry updates the table.
+	 * @param row the row id
+	 * @return the Q-values of the row
+	 */
+	public double [] qs(int row){
+		return this.rowQs[row];
+	}
+
+	/**
+	 * Returns the generation of a row id, which changes each time the row is removed or evicted. A row id and
+	 * generation saved together refer to the same state for as long as the generation is unchanged.
+	 * @param row the row id
+	 * @return the generation of the row id
+	 */
+	public int generation(int row){
+		return this.rowGenerations[row];
+	}
+
+	/**
+	 * Returns the clock time of the last access to a row; the clock ticks once per access.
+	 * @param row the row id
+	 * @return the time of the last access
+	 */
+	public long lastAccess(int row){
+		return this.rowLastAccess[row];
+	}
+
+	/**
+	 * Returns the number of times a row has been accessed since it was added.
+	 * @param row the row id
+	 * @return the number of accesses
+	 */
+	public int visits(int row){
+		return this.rowVisits[row];
+	}
+
+	/**
+	 * Returns the position in a row of the given action index, or -1 if the row has no such action.
+	 * @param row the row id
+	 * @param actionIndex the action index
+	 * @return the position of the action in the row, or -1
+	 */
+	public int position(int row, int actionIndex){
+		int [] actions = this.rowActions[row];
+		for(int i = 0; i < actions.length; i++){
+			if(actions[i] == actionIndex){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the max Q-value of a row, or 0 if it has no actions.
+	 * @param row the row id
+	 * @return the max Q-value of the row
+	 */
+	public double maxQ(int row){
+		double [] qs = this.rowQs[row];
+		if(qs.length == 0){
+			return 0.;
+		}
+		double max = qs[0];
+		for(int i = 1; i < qs.length; i++){
+			if(qs[i] > max){
+				max = qs[i];
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Returns the number of lookups that found a row.
+	 * @return the number of hits
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of rows added because a state had no row.
+	 * @return the number of misses
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of rows evicted to stay within capacity.
+	 * @return the number of evictions
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public void resetCounters(){
+		this.hits = 0;
+		this.misses = 0;
+		this.evictions = 0;
+	}
+
+	public void clear(){
+		int bound = this.index.idBound();
+		Arrays.fill(this.rowActions, 0, bound, null);
+		Arrays.fill(this.rowQs, 0, bound, null);
+		for(int i = 0; i < bound; i++){
+			this.rowGenerations[i]++;
+		}
+		this.index.clear();
+		this.pinnedRow = -1;
+	}
+
+	/**
+	 * Evicts the lowest scored of a sample of rows, never the pinned row.
+	 * @return false if there was no row to evict
+	 */
+	protected boolean evict(){
+		int bound = this.index.idBound();
+		int victim = -1;
+		double victimScore = Double.POSITIVE_INFINITY;
+		for(int i = 0; i < this.evictionSamples; i++){
+			int row = this.rand.nextInt(bound);
+			if(this.rowQs[row] == null || row == this.pinnedRow){
+				continue;
+			}
+			double score = this.evictionPolicy.retentionScore(this, row);
+			if(score < victimScore){
+				victim = row;
+				victimScore = score;
+			}
+		}
+
+		//if every sample missed, fall back to the first evictable row
+		for(int row = 0; victim == -1 && row < bound; row++){
+			if(this.rowQs[row] != null && row != this.pinnedRow){
+				victim = row;
+			}
+		}
+
+		if(victim == -1){
+			return false;
+		}
+
+		this.removeRow(this.index.state(victim));
+		this.evictions++;
+		return true;
+	}
+
+	protected void ensureRowCapacity(int capacity){
+		if(capacity > this.rowActions.length){
+			this.rowActions = Arrays.copyOf(this.rowActions, capacity);
+			this.rowQs = Arrays.copyOf(this.rowQs, capacity);
+			this.rowGenerations = Arrays.copyOf(this.rowGenerations, capacity);
+			this.rowLastAccess = Arrays.copyOf(this.rowLastAccess, capacity);
+			this.rowVisits = Arrays.copyOf(this.rowVisits, capacity);
+		}
+	}
+
+}
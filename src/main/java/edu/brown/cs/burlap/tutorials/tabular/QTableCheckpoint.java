@@ -0,0 +1,244 @@
+package edu.brown.cs.burlap.tutorials.tabular;
+
+import burlap.behavior.singleagent.learning.tdmethods.QLearningStateNode;
+import burlap.behavior.valuefunction.QValue;
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.action.ActionType;
+import burlap.mdp.singleagent.SADomain;
+import burlap.statehashing.HashableState;
+import burlap.statehashing.HashableStateFactory;
+
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Reads and writes the binary checkpoint format for tabular Q-functions, either a {@link QTable} or the state nodes
+ * of a BURLAP {@link burlap.behavior.singleagent.learning.tdmethods.QLearning} agent. A checkpoint is:
+ * <pre>
+ * int magic, int numActions, numActions x string actionName,
+ * int numStates, numStates x (state, int n, n x int actionId, n x double q)
+ * </pre>
+ * where states are written by a {@link StateCodec}, action ids refer to the action name table, and strings are an
+ * int length followed by UTF-8 bytes. Checkpoints are read from a {@link ByteBuffer}, normally a memory-mapped file
+ * from {@link #map(File)}, and the action ids and Q-values of a state are bulk copied out of it, so restoring costs
+ * one pass over the file plus creating the states.
+ */
+public class QTableCheckpoint {
+
+	public static final int MAGIC = 0x51544B31;
+
+	protected static final Charset UTF8 = Charset.forName("UTF-8");
+
+
+	/**
+	 * Writes the rows of a Q-table.
+	 * @param out the output to write to
+	 * @param table the Q-table
+	 * @param actionIndex the action index whose indices the table's rows store
+	 * @param codec the codec for the table's states
+	 * @throws IOException if the output cannot be written
+	 */
+	public static void write(DataOutput out, QTable table, ActionIndex actionIndex, StateCodec codec) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(actionIndex.size());
+		for(int i = 0; i < actionIndex.size(); i++){
+			writeString(out, actionIndex.action(i).actionName());
+		}
+
+		out.writeInt(table.numRows());
+		for(int row = 0; row < table.rowBound(); row++){
+			double [] qs = table.qs(row);
+			if(qs == null){
+				continue;
+			}
+			codec.write(table.state(row).s(), out);
+			int [] actions = table.actions(row);
+			out.writeInt(actions.length);
+			for(int a : actions){
+				out.writeInt(a);
+			}
+			for(double q : qs){
+				out.writeDouble(q);
+			}
+		}
+	}
+
+	/**
+	 * Reads a checkpoint into a Q-table, adding a row for each stored state. Actions are indexed in the given action
+	 * index, which need not match the one the checkpoint was written with.
+	 * @param in the buffer to read from
+	 * @param table the Q-table to add rows to; it should not already have rows for the stored states
+	 * @param actionIndex the action index whose indices the table's rows store
+	 * @param hashingFactory the hashing factory used to hash the stored states
+	 * @param codec the codec for the stored states
+	 * @param domain the domain whose action types are used to recreate the stored actions
+	 */
+	public static void read(ByteBuffer in, QTable table, ActionIndex actionIndex, HashableStateFactory hashingFactory,
+							StateCodec codec, SADomain domain){
+		Action [] actions = readHeader(in, domain);
+		int [] actionIds = new int[actions.length];
+		for(int i = 0; i < actions.length; i++){
+			actionIds[i] = actionIndex.index(actions[i]);
+		}
+
+		int numStates = in.getInt();
+		for(int i = 0; i < numStates; i++){
+			HashableState hs = hashingFactory.hashState(codec.read(in));
+			int n = in.getInt();
+			int [] rowActions = new int[n];
+			double [] qs = new double[n];
+			readRow(in, rowActions, qs);
+			for(int j = 0; j < n; j++){
+				rowActions[j] = actionIds[rowActions[j]];
+			}
+			table.addRow(hs, rowActions, qs);
+		}
+	}
+
+	/**
+	 * Writes the state nodes of a BURLAP Q-learning agent.
+	 * @param out the output to write to
+	 * @param nodes the state nodes
+	 * @param codec the codec for the states
+	 * @throws IOException if the output cannot be written
+	 */
+	public static void write(DataOutput out, Collection<QLearningStateNode> nodes, StateCodec codec) throws IOException {
+		ActionIndex actionIndex = new ActionIndex();
+		for(QLearningStateNode node : nodes){
+			for(QValue q : node.qEntry){
+				actionIndex.index(q.a);
+			}
+		}
+
+		out.writeInt(MAGIC);
+		out.writeInt(actionIndex.size());
+		for(int i = 0; i < actionIndex.size(); i++){
+			writeString(out, actionIndex.action(i).actionName());
+		}
+
+		out.writeInt(nodes.size());
+		for(QLearningStateNode node : nodes){
+			codec.write(node.s.s(), out);
+			out.writeInt(node.qEntry.size());
+			for(QValue q : node.qEntry){
+				out.writeInt(actionIndex.index(q.a));
+			}
+			for(QValue q : node.qEntry){
+				out.writeDouble(q.q);
+			}
+		}
+	}
+
+	/**
+	 * Reads a checkpoint into the state node map of a BURLAP Q-learning agent.
+	 * @param in the buffer to read from
+	 * @param qFunction the map to put a state node in for each stored state
+	 * @param hashingFactory the hashing factory used to hash the stored states
+	 * @param codec the codec for the stored states
+	 * @param domain the domain whose action types are used to recreate the stored actions
+	 */
+	public static void read(ByteBuffer in, Map<HashableState, QLearningStateNode> qFunction, HashableStateFactory hashingFactory,
+							StateCodec codec, SADomain domain){
+		Action [] actions = readHeader(in, domain);
+
+		int numStates = in.getInt();
+		int [] rowActions = new int[0];
+		double [] qs = new double[0];
+		for(int i = 0; i < numStates; i++){
+			HashableState hs = hashingFactory.hashState(codec.read(in));
+			int n = in.getInt();
+			if(n > rowActions.length){
+				rowActions = new int[n];
+				qs = new double[n];
+			}
+			readRow(in, rowActions, qs, n);
+			QLearningStateNode node = new QLearningStateNode(hs);
+			for(int j = 0; j < n; j++){
+				node.addQValue(actions[rowActions[j]], qs[j]);
+			}
+			qFunction.put(hs, node);
+		}
+	}
+
+	/**
+	 * Memory-maps a checkpoint file for reading.
+	 * @param file the checkpoint file
+	 * @return a buffer over the file's contents
+	 * @throws IOException if the file cannot be read
+	 */
+	public static ByteBuffer map(File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try{
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.load();
+			return buffer;
+		}
+		finally{
+			channel.close();
+		}
+	}
+
+	public static void writeString(DataOutput out, String str) throws IOException {
+		byte [] bytes = str.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	public static String readString(ByteBuffer in){
+		byte [] bytes = new byte[in.getInt()];
+		in.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * Recreates an action from its name using the domain's action types. The name is first tried as the name of an
+	 * action type; otherwise it is taken to be an action type name followed by a space and the action's parameters.
+	 * @param domain the domain
+	 * @param actionName the action name
+	 * @return the action
+	 */
+	public static Action decodeAction(SADomain domain, String actionName){
+		ActionType type = domain.getAction(actionName);
+		if(type != null){
+			return type.associatedAction(actionName);
+		}
+		int space = actionName.indexOf(' ');
+		if(space != -1 && (type = domain.getAction(actionName.substring(0, space))) != null){
+			return type.associatedAction(actionName.substring(space + 1));
+		}
+		throw new RuntimeException("Checkpoint refers to action " + actionName + ", which the domain does not define.");
+	}
+
+	protected static Action [] readHeader(ByteBuffer in, SADomain domain){
+		if(in.getInt() != MAGIC){
+			throw new RuntimeException("Not a Q-table checkpoint.");
+		}
+		Action [] actions = new Action[in.getInt()];
+		for(int i = 0; i < actions.length; i++){
+			actions[i] = decodeAction(domain, readString(in));
+		}
+		return actions;
+	}
+
+	protected static void readRow(ByteBuffer in, int [] actions, double [] qs){
+		readRow(in, actions, qs, actions.length);
+	}
+
+	protected static void readRow(ByteBuffer in, int [] actions, double [] qs, int n){
+		//bulk copy the row out of the buffer through views, then skip past it
+		int start = in.position();
+		in.asIntBuffer().get(actions, 0, n);
+		in.position(start + 4 * n);
+		in.asDoubleBuffer().get(qs, 0, n);
+		in.position(start + 12 * n);
+	}
+
+}
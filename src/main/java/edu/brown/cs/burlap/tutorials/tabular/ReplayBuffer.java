@@ -0,0 +1,254 @@
+package edu.brown.cs.burlap.tutorials.tabular;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A fixed-capacity ring buffer of observed transitions for experience replay in tabular learners. A transition is
+ * stored as primitives in parallel arrays: the Q-table row of the state, the position of the taken action in that
+ * row, the reward, the row of the next state and whether the next state was terminal. Once the buffer is full, each
+ * new transition overwrites the oldest one.
+ * <p>
+ * Each transition also stores the {@link QTable#generation(int)} of its two rows, so that transitions whose rows
+ * have since been evicted from a bounded table can be recognized and skipped.
+ * <p>
+ * Transitions are sampled either uniformly or, if the buffer is prioritized, in proportion to their priority
+ * |delta|^alpha, where delta is the TD error of the transition's last update. Prioritized sampling uses a sum tree
+ * over the slots, so sampling and updating a priority take O(log capacity) time. New transitions get the largest
+ * priority seen so far so that each is replayed at least once soon after it is stored.
+ * <p>
+ * Prioritized sampling replays high-priority transitions more often than they were observed, which biases the learned
+ * values toward them. {@link #importanceWeight(int)} returns the importance-sampling weight (p_min / p_i)^beta that
+ * corrects this bias when it scales the update of a sampled transition; beta = 1 corrects it fully. The smallest
+ * priority is kept in a second tree over the slots, so computing a weight takes O(1) time.
+ */
+public class ReplayBuffer {
+
+	protected int capacity;
+	protected int size;
+	protected int next;
+
+	protected int [] rows;
+	protected int [] rowGenerations;
+	protected int [] positions;
+	protected double [] rewards;
+	protected int [] nextRows;
+	protected int [] nextRowGenerations;
+	protected boolean [] terminal;
+
+	protected boolean prioritized;
+	protected double priorityExponent = 0.6;
+	protected double minPriority = 1e-6;
+	protected double maxPriority = 1.;
+	protected double importanceExponent = 0.4;
+
+	/**
+	 * The sum tree of priorities when the buffer is prioritized: node i has children 2i and 2i+1 and the priority of
+	 * slot j is stored in leaf numLeaves + j.
+	 */
+	protected double [] tree;
+	protected int numLeaves;
+
+	/**
+	 * The min tree of priorities, laid out like {@link #tree}, with empty slots at positive infinity.
+	 */
+	protected double [] minTree;
+
+
+	/**
+	 * Creates an empty buffer.
+	 * @param capacity the max number of transitions stored, which must be at least 1
+	 * @param prioritized whether to sample in proportion to TD error rather than uniformly
+	 */
+	public ReplayBuffer(int capacity, boolean prioritized) {
+		if(capacity < 1){
+			throw new IllegalArgumentException("A replay buffer must be able to hold at least 1 transition, but the capacity is " + capacity + ".");
+		}
+		this.capacity = capacity;
+		this.prioritized = prioritized;
+		this.rows = new int[capacity];
+		this.rowGenerations = new int[capacity];
+		this.positions = new int[capacity];
+		this.rewards = new double[capacity];
+		this.nextRows = new int[capacity];
+		this.nextRowGenerations = new int[capacity];
+		this.terminal = new boolean[capacity];
+		if(prioritized){
+			this.numLeaves = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+			this.tree = new double[2 * this.numLeaves];
+			this.minTree = new double[2 * this.numLeaves];
+			Arrays.fill(this.minTree, Double.POSITIVE_INFINITY);
+		}
+	}
+
+	/**
+	 * Sets the exponent alpha applied to |TD error| to get a transition's priority. 0 is uniform sampling and 1 is
+	 * fully proportional sampling.
+	 * @param priorityExponent the priority exponent
+	 */
+	public void setPriorityExponent(double priorityExponent) {
+		this.priorityExponent = priorityExponent;
+	}
+
+	/**
+	 * Sets the exponent beta of the importance-sampling weights returned by {@link #importanceWeight(int)}. 0 leaves
+	 * the prioritization bias uncorrected and 1 corrects it fully.
+	 * @param importanceExponent the importance-sampling exponent
+	 */
+	public void setImportanceExponent(double importanceExponent) {
+		this.importanceExponent = importanceExponent;
+	}
+
+	public int capacity(){
+		return this.capacity;
+	}
+
+	public int size(){
+		return this.size;
+	}
+
+	public boolean isPrioritized(){
+		return this.prioritized;
+	}
+
+	/**
+	 * Stores a transition, overwriting the oldest one if the buffer is full.
+	 * @param row the Q-table row of the state
+	 * @param rowGeneration the generation of the row
+	 * @param position the position of the taken action in the row
+	 * @param reward the reward received
+	 * @param nextRow the Q-table row of the next state, or -1 if it is terminal
+	 * @param nextRowGeneration the generation of the next row, or 0 if it is terminal
+	 * @param terminated whether the next state is terminal
+	 * @return the slot the transition was stored in
+	 */
+	public int add(int row, int rowGeneration, int position, double reward, int nextRow, int nextRowGeneration, boolean terminated){
+		int slot = this.next;
+		this.rows[slot] = row;
+		this.rowGenerations[slot] = rowGeneration;
+		this.positions[slot] = position;
+		this.rewards[slot] = reward;
+		this.nextRows[slot] = nextRow;
+		this.nextRowGenerations[slot] = nextRowGeneration;
+		this.terminal[slot] = terminated;
+		if(this.prioritized){
+			this.setPriority(slot, this.maxPriority);
+		}
+
+		this.next = slot + 1 == this.capacity ? 0 : slot + 1;
+		if(this.size < this.capacity){
+			this.size++;
+		}
+		return slot;
+	}
+
+	/**
+	 * Samples the slot of a stored transition, uniformly or by priority. The buffer must not be empty.
+	 * @param rand the random number generator to use
+	 * @return the sampled slot
+	 */
+	public int sample(Random rand){
+		if(!this.prioritized){
+			return rand.nextInt(this.size);
+		}
+
+		//walk down the sum tree toward the leaf whose cumulative priority range contains u
+		double u = rand.nextDouble() * this.tree[1];
+		int i = 1;
+		while(i < this.numLeaves){
+			int left = i << 1;
+			if(u < this.tree[left]){
+				i = left;
+			}
+			else{
+				u -= this.tree[left];
+				i = left + 1;
+			}
+		}
+
+		//rounding can push u past the last filled leaf
+		return Math.min(i - this.numLeaves, this.size - 1);
+	}
+
+	/**
+	 * Updates the priority of a stored transition from the TD error of its latest update. Does nothing if the
+	 * buffer is not prioritized.
+	 * @param slot the slot of the transition
+	 * @param tdError the TD error
+	 */
+	public void updatePriority(int slot, double tdError){
+		if(!this.prioritized){
+			return;
+		}
+		double p = Math.pow(Math.abs(tdError) + this.minPriority, this.priorityExponent);
+		if(p > this.maxPriority){
+			this.maxPriority = p;
+		}
+		this.setPriority(slot, p);
+	}
+
+	/**
+	 * Returns the importance-sampling weight of a stored transition, by which its update should be scaled to correct
+	 * for prioritized sampling. Weights are normalized so that the lowest-priority transition has weight 1. Always 1
+	 * if the buffer is not prioritized.
+	 * @param slot the slot of the transition
+	 * @return the importance-sampling weight, in (0, 1]
+	 */
+	public double importanceWeight(int slot){
+		if(!this.prioritized){
+			return 1.;
+		}
+		return Math.pow(this.minTree[1] / this.tree[this.numLeaves + slot], this.importanceExponent);
+	}
+
+	public int row(int slot){
+		return this.rows[slot];
+	}
+
+	public int rowGeneration(int slot){
+		return this.rowGenerations[slot];
+	}
+
+	public int position(int slot){
+		return this.positions[slot];
+	}
+
+	public double reward(int slot){
+		return this.rewards[slot];
+	}
+
+	public int nextRow(int slot){
+		return this.nextRows[slot];
+	}
+
+	public int nextRowGeneration(int slot){
+		return this.nextRowGenerations[slot];
+	}
+
+	public boolean isTerminal(int slot){
+		return this.terminal[slot];
+	}
+
+	public void clear(){
+		this.size = 0;
+		this.next = 0;
+		this.maxPriority = 1.;
+		if(this.prioritized){
+			Arrays.fill(this.tree, 0.);
+			Arrays.fill(this.minTree, Double.POSITIVE_INFINITY);
+		}
+	}
+
+	protected void setPriority(int slot, double p){
+		int i = this.numLeaves + slot;
+		this.tree[i] = p;
+		this.minTree[i] = p;
+		i >>= 1;
+		while(i >= 1){
+			this.tree[i] = this.tree[i << 1] + this.tree[(i << 1) + 1];
+			this.minTree[i] = Math.min(this.minTree[i << 1], this.minTree[(i << 1) + 1]);
+			i >>= 1;
+		}
+	}
+
+}
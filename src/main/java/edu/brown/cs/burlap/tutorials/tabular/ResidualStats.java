@@ -0,0 +1,99 @@
+package edu.brown.cs.burlap.tutorials.tabular;
+
+/**
+ * A snapshot of the progress of an anytime value function planner, describing how good its current greedy policy is.
+ * The max residual is the largest Bellman residual (absolute change in value from a backup) the planner has
+ * measured for its current values. If every state's residual is at most r, the greedy policy's value is within
+ * 2 * gamma * r / (1 - gamma) of optimal; see {@link #policyLossBound(double)}.
+ */
+public class ResidualStats {
+
+	protected final double maxResidual;
+	protected final boolean finished;
+	protected final int numStates;
+	protected final long sweeps;
+	protected final long backups;
+	protected final long planningNanos;
+
+
+	public ResidualStats(double maxResidual, boolean finished, int numStates, long sweeps, long backups, long planningNanos) {
+		this.maxResidual = maxResidual;
+		this.finished = finished;
+		this.numStates = numStates;
+		this.sweeps = sweeps;
+		this.backups = backups;
+		this.planningNanos = planningNanos;
+	}
+
+	/**
+	 * Returns the max Bellman residual of the current values, or {@link Double#POSITIVE_INFINITY} if no complete
+	 * pass over the states has been made since states were last added.
+	 * @return the max Bellman residual
+	 */
+	public double getMaxResidual() {
+		return maxResidual;
+	}
+
+	/**
+	 * Returns whether planning finished, either by reaching the residual threshold or by using its full iteration
+	 * budget, and so will not make further progress until new states are added. A finished planner has not
+	 * necessarily converged; use {@link #isConverged(double)} for that.
+	 * @return whether planning finished
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * Returns whether the max residual is within a threshold, such as the planner's max delta.
+	 * @param maxDelta the residual threshold
+	 * @return whether the max residual is at most the threshold
+	 */
+	public boolean isConverged(double maxDelta) {
+		return this.maxResidual <= maxDelta;
+	}
+
+	public int getNumStates() {
+		return numStates;
+	}
+
+	/**
+	 * Returns the total number of complete sweeps over the pending states.
+	 * @return the total number of complete sweeps
+	 */
+	public long getSweeps() {
+		return sweeps;
+	}
+
+	/**
+	 * Returns the total number of state backups performed.
+	 * @return the total number of state backups
+	 */
+	public long getBackups() {
+		return backups;
+	}
+
+	/**
+	 * Returns the total wall-clock time spent planning, in nanoseconds.
+	 * @return the total planning time in nanoseconds
+	 */
+	public long getPlanningNanos() {
+		return planningNanos;
+	}
+
+	/**
+	 * Returns an upper bound on how much worse (in expected discounted return from any state) the greedy policy is
+	 * than the optimal policy, given the max residual.
+	 * @param gamma the discount factor
+	 * @return the bound on the loss of the greedy policy
+	 */
+	public double policyLossBound(double gamma){
+		return 2. * gamma * this.maxResidual / (1. - gamma);
+	}
+
+	@Override
+	public String toString() {
+		return "max residual: " + this.maxResidual + (this.finished ? " (finished)" : "") + "; states: " + this.numStates
+				+ "; sweeps: " + this.sweeps + "; backups: " + this.backups + "; time: " + (this.planningNanos / 1000000.) + "ms";
+	}
+}
@@ -0,0 +1,74 @@
+package edu.brown.cs.burlap.tutorials.tabular;
+
+import burlap.behavior.valuefunction.QFunction;
+import burlap.mdp.core.state.State;
+
+/**
+ * Decides which row a capacity-bounded {@link QTable} evicts when it is full. The table samples a few rows and
+ * evicts the one with the lowest retention score, which approximates evicting the lowest scored row overall without
+ * keeping the rows ordered.
+ */
+public interface RowEvictionPolicy {
+
+	/**
+	 * Returns how much the row is worth keeping; the sampled row with the lowest score is evicted.
+	 * @param table the Q-table
+	 * @param row the row id
+	 * @return the retention score of the row
+	 */
+	double retentionScore(QTable table, int row);
+
+
+	/**
+	 * Evicts the least recently used row.
+	 */
+	class LeastRecentlyUsed implements RowEvictionPolicy {
+		@Override
+		public double retentionScore(QTable table, int row) {
+			return table.lastAccess(row);
+		}
+	}
+
+	/**
+	 * Evicts the row that has been looked up the fewest times.
+	 */
+	class LeastVisited implements RowEvictionPolicy {
+		@Override
+		public double retentionScore(QTable table, int row) {
+			return table.visits(row);
+		}
+	}
+
+	/**
+	 * Evicts the row whose Q-values have moved the least from their initial values, since recreating it later
+	 * loses the least learning. The initial values are recomputed from the Q-value initialization function.
+	 */
+	class SmallestQChange implements RowEvictionPolicy {
+
+		protected QFunction qinit;
+		protected ActionIndex actionIndex;
+
+		/**
+		 * Initializes.
+		 * @param qinit the Q-value initialization function used to create rows
+		 * @param actionIndex the action index whose indices the table's rows store
+		 */
+		public SmallestQChange(QFunction qinit, ActionIndex actionIndex) {
+			this.qinit = qinit;
+			this.actionIndex = actionIndex;
+		}
+
+		@Override
+		public double retentionScore(QTable table, int row) {
+			State s = table.state(row).s();
+			int [] actions = table.actions(row);
+			double [] qs = table.qs(row);
+			double change = 0.;
+			for(int i = 0; i < actions.length; i++){
+				change = Math.max(change, Math.abs(qs[i] - this.qinit.qValue(s, this.actionIndex.action(actions[i]))));
+			}
+			return change;
+		}
+	}
+
+}
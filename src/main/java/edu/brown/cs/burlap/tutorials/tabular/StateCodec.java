@@ -0,0 +1,30 @@
+package edu.brown.cs.burlap.tutorials.tabular;
+
+import burlap.mdp.core.state.State;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes states of a domain to a compact binary form and reads them back, for checkpoint files. Reading is done from
+ * a {@link ByteBuffer} so that checkpoints can be restored directly from a memory-mapped file.
+ */
+public interface StateCodec {
+
+	/**
+	 * Writes a state.
+	 * @param s the state
+	 * @param out the output to write to
+	 * @throws IOException if the output cannot be written
+	 */
+	void write(State s, DataOutput out) throws IOException;
+
+	/**
+	 * Reads a state written by {@link #write(State, DataOutput)}, advancing the buffer's position past it.
+	 * @param in the buffer to read from
+	 * @return the state
+	 */
+	State read(ByteBuffer in);
+
+}
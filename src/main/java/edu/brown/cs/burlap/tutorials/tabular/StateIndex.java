@@ -0,0 +1,204 @@
+package edu.brown.cs.burlap.tutorials.tabular;
+
+import burlap.statehashing.HashableState;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing map from {@link HashableState} objects to dense int ids. Ids are handed out in insertion
+ * order starting at 0, so they can be used directly as indices into primitive arrays (values, Q-rows, etc.)
+ * without boxing. Collisions are resolved with linear probing.
+ * <p>
+ * States can be removed, in which case their id is handed out again to the next added state before any new id is
+ * used, so ids stay within [0, {@link #idBound()}) and arrays indexed by them do not keep growing.
+ */
+public class StateIndex {
+
+	protected HashableState [] slotKeys;
+	protected int [] slotIds;
+	protected int mask;
+
+	protected HashableState [] states;
+	protected int size;
+
+	/**
+	 * The ids below {@link #idBound} freed by removals, used as a stack.
+	 */
+	protected int [] freeIds = new int[0];
+	protected int numFree;
+
+
+	public StateIndex(){
+		this(16);
+	}
+
+	public StateIndex(int expectedSize){
+		int capacity = 16;
+		while(capacity < expectedSize * 2){
+			capacity <<= 1;
+		}
+		this.slotKeys = new HashableState[capacity];
+		this.slotIds = new int[capacity];
+		this.mask = capacity - 1;
+		this.states = new HashableState[Math.max(expectedSize, 16)];
+	}
+
+	/**
+	 * Returns the number of states that currently have an id.
+	 * @return the number of states that currently have an id.
+	 */
+	public int size(){
+		return this.size - this.numFree;
+	}
+
+	/**
+	 * Returns one more than the largest id ever handed out; all current ids are below it. This is the same as
+	 * {@link #size()} if no state has been removed.
+	 * @return the bound on the current ids
+	 */
+	public int idBound(){
+		return this.size;
+	}
+
+	/**
+	 * Returns the id of the given hashed state, or -1 if it has not been added.
+	 * @param hs the hashed state
+	 * @return the id of the state, or -1 if it is not indexed
+	 */
+	public int id(HashableState hs){
+		int slot = this.slot(hs.hashCode());
+		HashableState k;
+		while((k = this.slotKeys[slot]) != null){
+			if(k == hs || k.equals(hs)){
+				return this.slotIds[slot];
+			}
+			slot = (slot + 1) & this.mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the id of the given hashed state, assigning it the next free id if it has not been seen before.
+	 * @param hs the hashed state
+	 * @return the id of the state
+	 */
+	public int add(HashableState hs){
+		int slot = this.slot(hs.hashCode());
+		HashableState k;
+		while((k = this.slotKeys[slot]) != null){
+			if(k == hs || k.equals(hs)){
+				return this.slotIds[slot];
+			}
+			slot = (slot + 1) & this.mask;
+		}
+
+		int id;
+		if(this.numFree > 0){
+			id = this.freeIds[--this.numFree];
+		}
+		else{
+			id = this.size;
+			if(id == this.states.length){
+				this.states = Arrays.copyOf(this.states, id * 2);
+			}
+			this.size++;
+		}
+		this.states[id] = hs;
+		this.slotKeys[slot] = hs;
+		this.slotIds[slot] = id;
+
+		//keep load factor at or below 0.5
+		if(this.size() * 2 > this.slotKeys.length){
+			this.rehash(this.slotKeys.length * 2);
+		}
+
+		return id;
+	}
+
+	/**
+	 * Removes the given hashed state, freeing its id for reuse.
+	 * @param hs the hashed state
+	 * @return the freed id, or -1 if the state was not indexed
+	 */
+	public int remove(HashableState hs){
+		int slot = this.slot(hs.hashCode());
+		HashableState k;
+		while((k = this.slotKeys[slot]) != null){
+			if(k == hs || k.equals(hs)){
+				int id = this.slotIds[slot];
+				this.deleteSlot(slot);
+				this.states[id] = null;
+				if(this.numFree == this.freeIds.length){
+					this.freeIds = Arrays.copyOf(this.freeIds, Math.max(this.numFree * 2, 16));
+				}
+				this.freeIds[this.numFree++] = id;
+				return id;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the hashed state with the given id, or null if the id is free.
+	 * @param id the id of the state
+	 * @return the hashed state
+	 */
+	public HashableState state(int id){
+		return this.states[id];
+	}
+
+	public void clear(){
+		Arrays.fill(this.slotKeys, null);
+		Arrays.fill(this.states, 0, this.size, null);
+		this.size = 0;
+		this.numFree = 0;
+	}
+
+	protected int slot(int hashCode){
+		//spread the bits so that states with structured hash codes (e.g., grid coordinates) don't cluster
+		int h = hashCode * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & this.mask;
+	}
+
+	/**
+	 * Empties a slot without a tombstone by shifting back any later entries of its probe run that could have been
+	 * placed in it, so lookups never stop early at the emptied slot.
+	 * @param slot the slot to empty
+	 */
+	protected void deleteSlot(int slot){
+		int hole = slot;
+		int j = slot;
+		HashableState k;
+		while((k = this.slotKeys[j = (j + 1) & this.mask]) != null){
+			//k can fill the hole if the hole lies on its probe path, from its home slot to j
+			int home = this.slot(k.hashCode());
+			if(((j - home) & this.mask) >= ((j - hole) & this.mask)){
+				this.slotKeys[hole] = k;
+				this.slotIds[hole] = this.slotIds[j];
+				hole = j;
+			}
+		}
+		this.slotKeys[hole] = null;
+	}
+
+	protected void rehash(int newCapacity){
+		HashableState [] oldKeys = this.slotKeys;
+		int [] oldIds = this.slotIds;
+		this.slotKeys = new HashableState[newCapacity];
+		this.slotIds = new int[newCapacity];
+		this.mask = newCapacity - 1;
+		for(int i = 0; i < oldKeys.length; i++){
+			HashableState k = oldKeys[i];
+			if(k != null){
+				int slot = this.slot(k.hashCode());
+				while(this.slotKeys[slot] != null){
+					slot = (slot + 1) & this.mask;
+				}
+				this.slotKeys[slot] = k;
+				this.slotIds[slot] = oldIds[i];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,162 @@
+package edu.brown.cs.burlap.tutorials.tabular;
+
+import burlap.behavior.policy.EnumerablePolicy;
+import burlap.behavior.policy.support.ActionProb;
+import burlap.behavior.policy.support.PolicyUndefinedException;
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.state.State;
+import burlap.statehashing.HashableStateFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A deterministic policy stored as a table from state id to the index of its selected action. States are mapped to
+ * ids with a {@link StateIndex}, and the distinct actions the policy selects are stored once, so selecting an action
+ * costs one state hash and two array reads, regardless of how expensive the planner that produced the policy is to
+ * query. When the policy selects from at most 255 distinct actions, action indices are stored as a byte per state.
+ * <p>
+ * The policy is undefined for states that are not in the index or for which no action was set (e.g., terminal states).
+ */
+public class TabularPolicy implements EnumerablePolicy {
+
+	protected HashableStateFactory hashingFactory;
+	protected StateIndex index;
+
+	protected Action [] actions;
+	protected Map<Action, Integer> actionIndices = new HashMap<Action, Integer>();
+
+	/**
+	 * The action index + 1 selected in each state while the policy is being built; 0 means undefined.
+	 */
+	protected int [] wideChoices;
+
+	/**
+	 * The unsigned action index + 1 selected in each state after {@link #compact()}; 0 means undefined.
+	 */
+	protected byte [] choices;
+
+
+	/**
+	 * Creates an empty policy for the states of the given index.
+	 * @param hashingFactory the hashing factory used to hash states before looking them up in the index
+	 * @param index the index mapping hashed states to ids
+	 * @param numStates the number of state ids, starting at 0, for which the policy is defined
+	 */
+	public TabularPolicy(HashableStateFactory hashingFactory, StateIndex index, int numStates) {
+		this.hashingFactory = hashingFactory;
+		this.index = index;
+		this.wideChoices = new int[numStates];
+		this.actions = new Action[0];
+	}
+
+	/**
+	 * Sets the action selected in the state with the given id.
+	 * @param id the state id
+	 * @param a the action to select
+	 */
+	public void setAction(int id, Action a){
+		if(this.wideChoices == null){
+			this.widen();
+		}
+		Integer ai = this.actionIndices.get(a);
+		if(ai == null){
+			ai = this.actions.length;
+			this.actions = Arrays.copyOf(this.actions, ai + 1);
+			this.actions[ai] = a;
+			this.actionIndices.put(a, ai);
+		}
+		this.wideChoices[id] = ai + 1;
+	}
+
+	/**
+	 * Shrinks the stored action indices to one byte per state if there are at most 255 distinct actions. Call this
+	 * once all actions have been set.
+	 * @return this policy
+	 */
+	public TabularPolicy compact(){
+		if(this.wideChoices != null && this.actions.length <= 255){
+			this.choices = new byte[this.wideChoices.length];
+			for(int i = 0; i < this.wideChoices.length; i++){
+				this.choices[i] = (byte)this.wideChoices[i];
+			}
+			this.wideChoices = null;
+		}
+		return this;
+	}
+
+	/**
+	 * Returns the number of state ids for which this policy has an entry.
+	 * @return the number of state ids for which this policy has an entry
+	 */
+	public int numStates(){
+		return this.wideChoices != null ? this.wideChoices.length : this.choices.length;
+	}
+
+	/**
+	 * Returns the index of the action selected in the state with the given id, or -1 if the policy is undefined there.
+	 * @param id the state id
+	 * @return the action index or -1
+	 */
+	public int actionIndex(int id){
+		if(id < 0 || id >= this.numStates()){
+			return -1;
+		}
+		int c = this.wideChoices != null ? this.wideChoices[id] : this.choices[id] & 0xFF;
+		return c - 1;
+	}
+
+	/**
+	 * Returns the action with the given action index.
+	 * @param actionIndex the action index
+	 * @return the action
+	 */
+	public Action actionForIndex(int actionIndex){
+		return this.actions[actionIndex];
+	}
+
+	@Override
+	public Action action(State s) {
+		int ai = this.actionIndex(this.index.id(this.hashingFactory.hashState(s)));
+		if(ai == -1){
+			throw new PolicyUndefinedException();
+		}
+		return this.actions[ai];
+	}
+
+	@Override
+	public double actionProb(State s, Action a) {
+		return this.action(s).equals(a) ? 1. : 0.;
+	}
+
+	@Override
+	public List<ActionProb> policyDistribution(State s) {
+		return Collections.singletonList(new ActionProb(this.action(s), 1.));
+	}
+
+	@Override
+	public boolean definedFor(State s) {
+		return this.actionIndex(this.index.id(this.hashingFactory.hashState(s))) != -1;
+	}
+
+	/**
+	 * Returns the distinct actions this policy selects, in action index order.
+	 * @return the distinct actions this policy selects
+	 */
+	public List<Action> getActions(){
+		return new ArrayList<Action>(Arrays.asList(this.actions));
+	}
+
+	protected void widen(){
+		this.wideChoices = new int[this.choices.length];
+		for(int i = 0; i < this.choices.length; i++){
+			this.wideChoices[i] = this.choices[i] & 0xFF;
+		}
+		this.choices = null;
+	}
+
+}
@@ -0,0 +1,331 @@
+package edu.brown.cs.burlap.tutorials.tabular;
+
+import burlap.mdp.core.action.Action;
+import burlap.mdp.core.action.ActionType;
+import burlap.mdp.core.action.ActionUtils;
+import burlap.mdp.core.state.State;
+import burlap.mdp.singleagent.model.FullModel;
+import burlap.mdp.singleagent.model.TransitionProb;
+import burlap.statehashing.HashableState;
+import burlap.statehashing.HashableStateFactory;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compiled, CSR-style (compressed sparse row) representation of the transition dynamics of all states reachable
+ * from a set of seed states. Each reachable state is given a dense int id by a {@link StateIndex} exactly once. For
+ * each state, its applicable actions are stored as a contiguous range of state-action rows, and each state-action
+ * row stores a contiguous range of (next state id, probability, reward) outcomes. After compilation, a Bellman
+ * backup only touches primitive arrays and never calls the model or the hashing factory.
+ * <p>
+ * States are compiled in id order, so the table can be grown incrementally: expanding from a new seed state
+ * only discovers and compiles states that are not already in the table. Terminal states are given an id, but no
+ * actions, since their value is always 0.
+ * <p>
+ * Optionally, the table also maintains for each state the list of states that have a transition into it
+ * (see {@link #enablePredecessors()}), which lets planners propagate value changes backwards.
+ */
+public class TransitionTable {
+
+	protected FullModel model;
+	protected List<ActionType> actionTypes;
+	protected HashableStateFactory hashingFactory;
+
+	protected StateIndex index = new StateIndex();
+
+	/**
+	 * The number of states whose transitions have been compiled. States with an id at or above this value have
+	 * been discovered but not yet compiled.
+	 */
+	protected int numCompiled;
+
+	protected boolean [] terminal = new boolean[16];
+
+	/**
+	 * Row offsets of each state into the state-action arrays; the actions of state i are in [stateOffsets[i], stateOffsets[i+1]).
+	 */
+	protected int [] stateOffsets = new int[17];
+
+	protected Action [] saActions = new Action[64];
+
+	/**
+	 * Offsets of each state-action row into the outcome arrays; the outcomes of row j are in [saOffsets[j], saOffsets[j+1]).
+	 */
+	protected int [] saOffsets = new int[65];
+	protected int numSA;
+
+	protected int [] outcomeNext = new int[256];
+	protected double [] outcomeProb = new double[256];
+	protected double [] outcomeReward = new double[256];
+	protected int numOutcomes;
+
+	protected boolean trackPredecessors;
+	protected int [][] preds;
+	protected int [] predCounts;
+
+
+	public TransitionTable(FullModel model, List<ActionType> actionTypes, HashableStateFactory hashingFactory) {
+		this.model = model;
+		this.actionTypes = actionTypes;
+		this.hashingFactory = hashingFactory;
+	}
+
+
+	/**
+	 * Finds and compiles all states reachable from the seed state that are not already in the table.
+	 * @param seed the state from which to expand
+	 * @return the id of the first newly compiled state; if it is equal to {@link #numStates()}, nothing new was found.
+	 */
+	public int expandFrom(State seed){
+
+		int firstNew = this.numCompiled;
+		this.index.add(this.hashingFactory.hashState(seed));
+
+		//ids are assigned on discovery, so compiling in id order is a breadth-first expansion
+		while(this.numCompiled < this.index.size()){
+			this.compile(this.numCompiled);
+			this.numCompiled++;
+		}
+
+		return firstNew;
+	}
+
+	/**
+	 * Returns the number of states in the table.
+	 * @return the number of states in the table.
+	 */
+	public int numStates(){
+		return this.numCompiled;
+	}
+
+	/**
+	 * Returns the id of a state, or -1 if it is not in the table.
+	 * @param s the state
+	 * @return the id of the state, or -1 if it is not in the table
+	 */
+	public int stateId(State s){
+		return this.stateId(this.hashingFactory.hashState(s));
+	}
+
+	/**
+	 * Returns the id of a hashed state, or -1 if it is not in the table.
+	 * @param hs the hashed state
+	 * @return the id of the state, or -1 if it is not in the table
+	 */
+	public int stateId(HashableState hs){
+		int id = this.index.id(hs);
+		return id < this.numCompiled ? id : -1;
+	}
+
+	/**
+	 * Turns on predecessor tracking. Predecessor lists are built for all states compiled so far and maintained for
+	 * all states compiled afterwards.
+	 */
+	public void enablePredecessors(){
+		if(this.trackPredecessors){
+			return;
+		}
+		this.trackPredecessors = true;
+		this.preds = new int[Math.max(this.index.size(), 16)][];
+		this.predCounts = new int[this.preds.length];
+		for(int id = 0; id < this.numCompiled; id++){
+			for(int sa = this.stateOffsets[id]; sa < this.stateOffsets[id+1]; sa++){
+				for(int o = this.saOffsets[sa]; o < this.saOffsets[sa+1]; o++){
+					this.addPredecessor(this.outcomeNext[o], id);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of distinct states with a transition into the given state. Requires predecessor tracking.
+	 * @param id the state id
+	 * @return the number of predecessors
+	 */
+	public int numPredecessors(int id){
+		return this.predCounts[id];
+	}
+
+	/**
+	 * Returns the predecessor array of a state; only the first {@link #numPredecessors(int)} entries are valid.
+	 * Requires predecessor tracking.
+	 * @param id the state id
+	 * @return the predecessor array of the state
+	 */
+	public int [] predecessors(int id){
+		return this.preds[id];
+	}
+
+	/**
+	 * Returns the index that assigns state ids. It must not be modified.
+	 * @return the index that assigns state ids
+	 */
+	public StateIndex getIndex(){
+		return this.index;
+	}
+
+	public HashableState state(int id){
+		return this.index.state(id);
+	}
+
+	public boolean isTerminal(int id){
+		return this.terminal[id];
+	}
+
+	/**
+	 * Returns the first state-action row of a state. The rows of state i are [firstSA(i), firstSA(i+1)).
+	 * @param id the state id
+	 * @return the first state-action row of the state
+	 */
+	public int firstSA(int id){
+		return this.stateOffsets[id];
+	}
+
+	public Action action(int sa){
+		return this.saActions[sa];
+	}
+
+	/**
+	 * Returns the state-action row of the given action in the given state, or -1 if the action was not applicable.
+	 * @param id the state id
+	 * @param a the action
+	 * @return the state-action row, or -1 if there is none
+	 */
+	public int saRow(int id, Action a){
+		for(int sa = this.stateOffsets[id]; sa < this.stateOffsets[id+1]; sa++){
+			if(this.saActions[sa].equals(a)){
+				return sa;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Computes the Q-value of a state-action row with respect to the given value array.
+	 * @param sa the state-action row
+	 * @param v the state values, indexed by state id
+	 * @param gamma the discount factor
+	 * @return the Q-value
+	 */
+	public double qValue(int sa, double [] v, double gamma){
+		double q = 0.;
+		for(int o = this.saOffsets[sa]; o < this.saOffsets[sa+1]; o++){
+			q += this.outcomeProb[o] * (this.outcomeReward[o] + gamma * v[this.outcomeNext[o]]);
+		}
+		return q;
+	}
+
+	/**
+	 * Computes the Bellman backup (max Q-value) of a state with respect to the given value array. Terminal states
+	 * and states without actions have a value of 0.
+	 * @param id the state id
+	 * @param v the state values, indexed by state id
+	 * @param gamma the discount factor
+	 * @return the backed up value
+	 */
+	public double backup(int id, double [] v, double gamma){
+		int start = this.stateOffsets[id];
+		int end = this.stateOffsets[id+1];
+		if(start == end){
+			return 0.;
+		}
+		double max = Double.NEGATIVE_INFINITY;
+		for(int sa = start; sa < end; sa++){
+			double q = this.qValue(sa, v, gamma);
+			if(q > max){
+				max = q;
+			}
+		}
+		return max;
+	}
+
+	public void clear(){
+		this.index.clear();
+		this.numCompiled = 0;
+		this.numSA = 0;
+		this.numOutcomes = 0;
+		if(this.trackPredecessors){
+			Arrays.fill(this.predCounts, 0);
+		}
+	}
+
+
+	protected void compile(int id){
+
+		State s = this.index.state(id).s();
+
+		if(id + 2 > this.stateOffsets.length){
+			this.stateOffsets = Arrays.copyOf(this.stateOffsets, this.stateOffsets.length * 2);
+			this.terminal = Arrays.copyOf(this.terminal, this.stateOffsets.length);
+		}
+
+		this.stateOffsets[id] = this.numSA;
+
+		this.terminal[id] = this.model.terminal(s);
+		if(!this.terminal[id]){
+			List<Action> actions = ActionUtils.allApplicableActionsForTypes(this.actionTypes, s);
+			for(Action a : actions){
+				this.addSA(id, a, this.model.transitions(s, a));
+			}
+		}
+
+		this.stateOffsets[id+1] = this.numSA;
+
+	}
+
+	protected void addSA(int id, Action a, List<TransitionProb> tps){
+
+		int sa = this.numSA;
+		if(sa + 2 > this.saOffsets.length){
+			this.saOffsets = Arrays.copyOf(this.saOffsets, this.saOffsets.length * 2);
+			this.saActions = Arrays.copyOf(this.saActions, this.saOffsets.length);
+		}
+		this.saActions[sa] = a;
+		this.saOffsets[sa] = this.numOutcomes;
+
+		for(TransitionProb tp : tps){
+			int o = this.numOutcomes;
+			if(o == this.outcomeNext.length){
+				this.outcomeNext = Arrays.copyOf(this.outcomeNext, o * 2);
+				this.outcomeProb = Arrays.copyOf(this.outcomeProb, o * 2);
+				this.outcomeReward = Arrays.copyOf(this.outcomeReward, o * 2);
+			}
+			int next = this.index.add(this.hashingFactory.hashState(tp.eo.op));
+			this.outcomeNext[o] = next;
+			this.outcomeProb[o] = tp.p;
+			this.outcomeReward[o] = tp.eo.r;
+			this.numOutcomes++;
+			if(this.trackPredecessors){
+				this.addPredecessor(next, id);
+			}
+		}
+
+		this.numSA++;
+		this.saOffsets[this.numSA] = this.numOutcomes;
+
+	}
+
+	protected void addPredecessor(int id, int pred){
+		if(id >= this.preds.length){
+			int newLength = Math.max(id + 1, this.preds.length * 2);
+			this.preds = Arrays.copyOf(this.preds, newLength);
+			this.predCounts = Arrays.copyOf(this.predCounts, newLength);
+		}
+		int [] p = this.preds[id];
+		int n = this.predCounts[id];
+		//states are compiled one at a time, so a duplicate can only be the most recently added predecessor
+		if(n > 0 && p[n-1] == pred){
+			return;
+		}
+		if(p == null){
+			p = this.preds[id] = new int[4];
+		}
+		else if(n == p.length){
+			p = this.preds[id] = Arrays.copyOf(p, n * 2);
+		}
+		p[n] = pred;
+		this.predCounts[id] = n + 1;
+	}
+
+}